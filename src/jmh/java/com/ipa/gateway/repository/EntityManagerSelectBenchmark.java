@@ -0,0 +1,94 @@
+package com.ipa.gateway.repository;
+
+import com.ipa.gateway.domain.Book;
+import io.r2dbc.spi.ConnectionFactories;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+import org.springframework.data.r2dbc.query.UpdateMapper;
+import org.springframework.data.relational.core.dialect.RenderContextFactory;
+import org.springframework.data.relational.core.sql.Conditions;
+import org.springframework.data.relational.core.sql.Expression;
+import org.springframework.data.relational.core.sql.Select;
+import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoin;
+import org.springframework.data.relational.core.sql.Table;
+import org.springframework.data.relational.core.sql.render.SqlRenderer;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Cost of producing the SQL of the book queries: rendering the select on every call with inlined values, against the
+ * templates rendered once by {@link EntityManager#createSelectTemplate}. No database is involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntityManagerSelectBenchmark {
+
+    private static final Table TABLE = Table.aliased("book", EntityManager.ENTITY_ALIAS);
+
+    private final Pageable pageable = PageRequest.of(3, 20, Sort.by("name"));
+
+    private EntityManager entityManager;
+
+    private long id;
+
+    @Setup
+    public void setup() {
+        MappingR2dbcConverter converter = new MappingR2dbcConverter(
+            new R2dbcMappingContext(),
+            R2dbcCustomConversions.of(PostgresDialect.INSTANCE, List.of())
+        );
+        DatabaseClient databaseClient = DatabaseClient.create(ConnectionFactories.get("r2dbc:postgresql://localhost/benchmark"));
+        entityManager = new EntityManager(
+            SqlRenderer.create(new RenderContextFactory(PostgresDialect.INSTANCE).createRenderContext()),
+            new UpdateMapper(PostgresDialect.INSTANCE, converter),
+            new R2dbcEntityTemplate(databaseClient, PostgresDialect.INSTANCE, converter)
+        );
+    }
+
+    @Benchmark
+    public String findByIdRendered() {
+        return entityManager.createSelect(
+            selectFrom(),
+            Book.class,
+            (Pageable) null,
+            Conditions.isEqual(TABLE.column("id"), Conditions.just(Long.toString(++id)))
+        );
+    }
+
+    @Benchmark
+    public String findByIdTemplate() {
+        return entityManager.createSelectTemplate(Book.class, "byId", null, () ->
+            selectFrom().where(Conditions.isEqual(TABLE.column("id"), Conditions.just(":id")))
+        );
+    }
+
+    @Benchmark
+    public String findPageRendered() {
+        return entityManager.createSelect(selectFrom(), Book.class, pageable, null);
+    }
+
+    @Benchmark
+    public String findPageTemplate() {
+        return entityManager.createSelectTemplate(Book.class, "all", pageable, EntityManagerSelectBenchmark::selectFrom);
+    }
+
+    private static SelectFromAndJoin selectFrom() {
+        List<Expression> columns = BookSqlHelper.getColumns(TABLE, EntityManager.ENTITY_ALIAS);
+        return Select.builder().select(columns).from(TABLE);
+    }
+}
@@ -0,0 +1,183 @@
+package com.ipa.gateway.repository.rowmapper;
+
+import com.ipa.gateway.domain.Book;
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.R2dbcType;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Type;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+
+/**
+ * Maps one million synthetic book rows, sharing the same metadata like the rows of a query result, with the
+ * {@link BookRowMapper} against the previous mapping by column name with an exception driven conversion fallback.
+ * The rows of two results are also mapped alternately, like concurrent queries, each result having its own metadata.
+ * <p>
+ * The price column is decoded as an {@link Integer}, so that it needs a conversion, as a driver would for an
+ * {@code integer} column read as a {@link Long}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BookRowMapperBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final String PREFIX = "e";
+
+    private ColumnConverter converter;
+
+    private BookRowMapper bookRowMapper;
+
+    private SyntheticRow[] rows;
+
+    private SyntheticRow[] interleavedRows;
+
+    @Setup
+    public void setup() {
+        MappingR2dbcConverter r2dbcConverter = new MappingR2dbcConverter(
+            new R2dbcMappingContext(),
+            R2dbcCustomConversions.of(PostgresDialect.INSTANCE, List.of())
+        );
+        converter = new ColumnConverter(R2dbcCustomConversions.of(PostgresDialect.INSTANCE, List.of()), r2dbcConverter);
+        bookRowMapper = new BookRowMapper(converter);
+        SyntheticMetadata metadata = metadata();
+        SyntheticMetadata otherMetadata = metadata();
+        rows = new SyntheticRow[1024];
+        interleavedRows = new SyntheticRow[1024];
+        for (int i = 0; i < rows.length; i++) {
+            Object[] values = { (long) i, "Book " + i, "Description of book " + i, 100 + i };
+            rows[i] = new SyntheticRow(metadata, values);
+            interleavedRows[i] = new SyntheticRow(i % 2 == 0 ? metadata : otherMetadata, values);
+        }
+    }
+
+    private static SyntheticMetadata metadata() {
+        return new SyntheticMetadata(
+            List.of(
+                new SyntheticColumn("e_id", R2dbcType.BIGINT),
+                new SyntheticColumn("e_name", R2dbcType.VARCHAR),
+                new SyntheticColumn("e_description", R2dbcType.VARCHAR),
+                new SyntheticColumn("e_price", R2dbcType.INTEGER)
+            )
+        );
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapByIndex(Blackhole blackhole) {
+        for (int i = 0; i < ROWS; i++) {
+            blackhole.consume(bookRowMapper.apply(rows[i & (rows.length - 1)], PREFIX));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapInterleavedByIndex(Blackhole blackhole) {
+        for (int i = 0; i < ROWS; i++) {
+            blackhole.consume(bookRowMapper.apply(interleavedRows[i & (interleavedRows.length - 1)], PREFIX));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void mapByName(Blackhole blackhole) {
+        for (int i = 0; i < ROWS; i++) {
+            blackhole.consume(mapByName(rows[i & (rows.length - 1)], PREFIX));
+        }
+    }
+
+    private Book mapByName(Row row, String prefix) {
+        Book entity = new Book();
+        entity.setId(fromRowByName(row, prefix + "_id", Long.class));
+        entity.setName(fromRowByName(row, prefix + "_name", String.class));
+        entity.setDescription(fromRowByName(row, prefix + "_description", String.class));
+        entity.setPrice(fromRowByName(row, prefix + "_price", Long.class));
+        return entity;
+    }
+
+    private <T> T fromRowByName(Row row, String columnName, Class<T> target) {
+        try {
+            return row.get(columnName, target);
+        } catch (Exception e) {
+            return converter.convert(row.get(columnName), target);
+        }
+    }
+
+    private record SyntheticColumn(String name, Type type) implements ColumnMetadata {
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Type getType() {
+            return type;
+        }
+    }
+
+    private record SyntheticMetadata(List<SyntheticColumn> columns) implements RowMetadata {
+        @Override
+        public ColumnMetadata getColumnMetadata(int index) {
+            return columns.get(index);
+        }
+
+        @Override
+        public ColumnMetadata getColumnMetadata(String name) {
+            return columns.get(indexOf(name));
+        }
+
+        @Override
+        public List<? extends ColumnMetadata> getColumnMetadatas() {
+            return columns;
+        }
+
+        private int indexOf(String name) {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).getName().equalsIgnoreCase(name)) {
+                    return i;
+                }
+            }
+            throw new NoSuchElementException("Unknown column " + name);
+        }
+    }
+
+    /**
+     * Decodes values only to their own type, like a driver without a codec for the requested type.
+     */
+    private record SyntheticRow(SyntheticMetadata metadata, Object[] values) implements Row {
+        @Override
+        public RowMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public <T> T get(int index, Class<T> type) {
+            Object value = values[index];
+            if (value != null && !type.isInstance(value)) {
+                throw new IllegalArgumentException("Cannot decode " + value.getClass() + " as " + type);
+            }
+            return type.cast(value);
+        }
+
+        @Override
+        public <T> T get(String name, Class<T> type) {
+            return get(metadata.indexOf(name), type);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Takes tokens from 64 threads, from a single hot bucket and from 1024 buckets through the whole
+ * {@link InProcessRateLimiter}, against a token bucket refilled under a lock.
+ * <p>
+ * The rate is high enough for most of the acquisitions to succeed, so that every one of them updates the bucket.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+public class InProcessRateLimiterBenchmark {
+
+    private static final long INTERVAL = 10;
+
+    private static final long CAPACITY = 1_000_000 * INTERVAL;
+
+    private static final int KEYS = 1024;
+
+    private final AtomicLong bucket = new AtomicLong(System.nanoTime());
+
+    private final LockedBucket lockedBucket = new LockedBucket();
+
+    private InProcessRateLimiter rateLimiter;
+
+    private String[] keys;
+
+    @Setup
+    public void setup() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getGateway().getRateLimit().setReplenishRate((int) (TimeUnit.SECONDS.toNanos(1) / INTERVAL));
+        applicationProperties.getGateway().getRateLimit().setBurstCapacity(CAPACITY / INTERVAL);
+        rateLimiter = new InProcessRateLimiter(applicationProperties, null);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "user:user-" + i;
+        }
+    }
+
+    @Benchmark
+    public long lockFreeHotBucket() {
+        return InProcessRateLimiter.tryAcquire(bucket, System.nanoTime(), INTERVAL, CAPACITY, 1);
+    }
+
+    @Benchmark
+    public long lockedHotBucket() {
+        return lockedBucket.tryAcquire(System.nanoTime());
+    }
+
+    @Benchmark
+    public boolean rateLimiterManyBuckets() {
+        return rateLimiter.isAllowed("books", keys[ThreadLocalRandom.current().nextInt(KEYS)]).block().isAllowed();
+    }
+
+    /**
+     * Token bucket holding its tokens and the time of its last refill, updated under a lock.
+     */
+    private static final class LockedBucket {
+
+        private long tokens = CAPACITY / INTERVAL;
+
+        private long refilled = System.nanoTime();
+
+        synchronized long tryAcquire(long now) {
+            long added = (now - refilled) / INTERVAL;
+            if (added > 0) {
+                tokens = Math.min(CAPACITY / INTERVAL, tokens + added);
+                refilled += added * INTERVAL;
+            }
+            if (tokens == 0) {
+                return -1;
+            }
+            return --tokens;
+        }
+    }
+}
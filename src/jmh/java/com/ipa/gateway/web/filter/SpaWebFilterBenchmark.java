@@ -0,0 +1,74 @@
+package com.ipa.gateway.web.filter;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Classifies a mix of paths like the one seen by the gateway, mostly proxied and API calls, with the
+ * {@link SpaWebFilter} against the prefix checks and pattern it used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpaWebFilterBenchmark {
+
+    private static final String[] PATHS = {
+        "/services/books/api/books",
+        "/services/books/api/books/42",
+        "/services/authors/api/authors",
+        "/services/books/api/books/42/chapters",
+        "/services/authors/api/authors/7",
+        "/api/account",
+        "/api/auth-info",
+        "/api/admin/users",
+        "/management/health",
+        "/management/prometheus",
+        "/app/main.3f2a1c9e.js",
+        "/content/images/logo.svg",
+        "/favicon.ico",
+        "/books/42/edit",
+        "/admin/metrics",
+        "/",
+    };
+
+    private final SpaWebFilter filter = new SpaWebFilter();
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int prefixTrie() {
+        int forwarded = 0;
+        for (String path : PATHS) {
+            if (filter.forwardsToIndex(path)) {
+                forwarded++;
+            }
+        }
+        return forwarded;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(16)
+    public int prefixesAndPattern() {
+        int forwarded = 0;
+        for (String path : PATHS) {
+            if (
+                !path.startsWith("/api") &&
+                !path.startsWith("/management") &&
+                !path.startsWith("/v3/api-docs") &&
+                !path.startsWith("/login") &&
+                !path.startsWith("/oauth2") &&
+                !path.startsWith("/services") &&
+                !path.contains(".") &&
+                path.matches("/(.*)")
+            ) {
+                forwarded++;
+            }
+        }
+        return forwarded;
+    }
+}
@@ -1,6 +1,10 @@
 package com.ipa.gateway.config;
 
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * Properties specific to Ipa Gateway.
@@ -10,9 +14,958 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
  */
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
+
+    private final Pagination pagination = new Pagination();
+
+    private final Security security = new Security();
+
+    private final UserSync userSync = new UserSync();
+
+    private final Export export = new Export();
+
+    private final EntityCache bookCache = new EntityCache();
+
+    private final Gateway gateway = new Gateway();
+
     // jhipster-needle-application-properties-property
 
+    public Pagination getPagination() {
+        return pagination;
+    }
+
+    public Security getSecurity() {
+        return security;
+    }
+
+    public UserSync getUserSync() {
+        return userSync;
+    }
+
+    public Export getExport() {
+        return export;
+    }
+
+    public EntityCache getBookCache() {
+        return bookCache;
+    }
+
+    public Gateway getGateway() {
+        return gateway;
+    }
+
     // jhipster-needle-application-properties-property-getter
 
+    public static class Pagination {
+
+        /**
+         * How long a total count is served from memory, zero disables the cache.
+         */
+        private Duration countCacheTtl = Duration.ofSeconds(10);
+
+        /**
+         * Tables estimated to hold at least this many rows report the planner estimate instead of an exact count,
+         * zero or less disables the estimates.
+         */
+        private long countEstimateThreshold = 100_000;
+
+        public Duration getCountCacheTtl() {
+            return countCacheTtl;
+        }
+
+        public void setCountCacheTtl(Duration countCacheTtl) {
+            this.countCacheTtl = countCacheTtl;
+        }
+
+        public long getCountEstimateThreshold() {
+            return countEstimateThreshold;
+        }
+
+        public void setCountEstimateThreshold(long countEstimateThreshold) {
+            this.countEstimateThreshold = countEstimateThreshold;
+        }
+    }
+
+    public static class Security {
+
+        private final UserInfo userInfo = new UserInfo();
+
+        private final JwtCache jwtCache = new JwtCache();
+
+        private final Jwks jwks = new Jwks();
+
+        public UserInfo getUserInfo() {
+            return userInfo;
+        }
+
+        public Jwks getJwks() {
+            return jwks;
+        }
+
+        public JwtCache getJwtCache() {
+            return jwtCache;
+        }
+
+        /**
+         * HTTP client settings for the OIDC userinfo endpoint, called to enrich access tokens without identity claims.
+         */
+        public static class UserInfo {
+
+            private int maxConnections = 50;
+
+            private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+            private Duration maxIdleTime = Duration.ofSeconds(30);
+
+            private Duration connectTimeout = Duration.ofSeconds(2);
+
+            private Duration responseTimeout = Duration.ofSeconds(5);
+
+            public int getMaxConnections() {
+                return maxConnections;
+            }
+
+            public void setMaxConnections(int maxConnections) {
+                this.maxConnections = maxConnections;
+            }
+
+            public Duration getPendingAcquireTimeout() {
+                return pendingAcquireTimeout;
+            }
+
+            public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+                this.pendingAcquireTimeout = pendingAcquireTimeout;
+            }
+
+            public Duration getMaxIdleTime() {
+                return maxIdleTime;
+            }
+
+            public void setMaxIdleTime(Duration maxIdleTime) {
+                this.maxIdleTime = maxIdleTime;
+            }
+
+            public Duration getConnectTimeout() {
+                return connectTimeout;
+            }
+
+            public void setConnectTimeout(Duration connectTimeout) {
+                this.connectTimeout = connectTimeout;
+            }
+
+            public Duration getResponseTimeout() {
+                return responseTimeout;
+            }
+
+            public void setResponseTimeout(Duration responseTimeout) {
+                this.responseTimeout = responseTimeout;
+            }
+        }
+
+        /**
+         * Cache of decoded and validated access tokens, entries never outlive the token expiry.
+         */
+        public static class JwtCache {
+
+            private boolean enabled = true;
+
+            private long maximumSize = 10_000;
+
+            private Duration timeToLive = Duration.ofMinutes(5);
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(long maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+
+            public Duration getTimeToLive() {
+                return timeToLive;
+            }
+
+            public void setTimeToLive(Duration timeToLive) {
+                this.timeToLive = timeToLive;
+            }
+        }
+
+        /**
+         * In-memory JSON Web Key set used to verify access tokens, fetched at startup and refreshed in the background.
+         */
+        public static class Jwks {
+
+            private Duration refreshInterval = Duration.ofMinutes(5);
+
+            /**
+             * Minimum time between two refreshes triggered by a token signed with an unknown key id.
+             */
+            private Duration minRefreshInterval = Duration.ofSeconds(30);
+
+            /**
+             * Maximum time to fetch the key set, so that a hung IdP does not hold the refreshes waiting on it.
+             */
+            private Duration timeout = Duration.ofSeconds(5);
+
+            public Duration getRefreshInterval() {
+                return refreshInterval;
+            }
+
+            public void setRefreshInterval(Duration refreshInterval) {
+                this.refreshInterval = refreshInterval;
+            }
+
+            public Duration getMinRefreshInterval() {
+                return minRefreshInterval;
+            }
+
+            public void setMinRefreshInterval(Duration minRefreshInterval) {
+                this.minRefreshInterval = minRefreshInterval;
+            }
+
+            public Duration getTimeout() {
+                return timeout;
+            }
+
+            public void setTimeout(Duration timeout) {
+                this.timeout = timeout;
+            }
+        }
+    }
+
+    /**
+     * Synchronization of the authenticated user with the local database, skipped while the IdP claims are unchanged.
+     */
+    public static class UserSync {
+
+        /**
+         * How long claims already synchronized are trusted before writing them again.
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+        private long maximumSize = 10_000;
+
+        /**
+         * Queue the writes and apply them in batches, instead of during the request.
+         */
+        private boolean writeBehind = true;
+
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        private int batchSize = 100;
+
+        /**
+         * Users waiting in the queue beyond this limit are synchronized during the request.
+         */
+        private int maxPending = 10_000;
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public boolean isWriteBehind() {
+            return writeBehind;
+        }
+
+        public void setWriteBehind(boolean writeBehind) {
+            this.writeBehind = writeBehind;
+        }
+
+        public Duration getFlushInterval() {
+            return flushInterval;
+        }
+
+        public void setFlushInterval(Duration flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+    }
+
+    /**
+     * Streaming exports of whole tables, as NDJSON or server-sent events.
+     */
+    public static class Export {
+
+        /**
+         * Rows fetched from the database cursor per round-trip.
+         */
+        private int fetchSize = 1000;
+
+        /**
+         * Entities serialized into one buffer before it is written to the response.
+         */
+        private int chunkSize = 256;
+
+        public int getFetchSize() {
+            return fetchSize;
+        }
+
+        public void setFetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+    }
+
+    /**
+     * Read-through cache of single entities looked up by id, invalidated by the writes.
+     */
+    public static class EntityCache {
+
+        private boolean enabled = true;
+
+        private long maximumSize = 10_000;
+
+        private Duration timeToLive = Duration.ofMinutes(10);
+
+        /**
+         * Broadcast the invalidations with a PostgreSQL notification, so that every instance drops its copy.
+         */
+        private boolean crossNodeInvalidation = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public boolean isCrossNodeInvalidation() {
+            return crossNodeInvalidation;
+        }
+
+        public void setCrossNodeInvalidation(boolean crossNodeInvalidation) {
+            this.crossNodeInvalidation = crossNodeInvalidation;
+        }
+    }
+
+    /**
+     * Settings of the requests proxied to the services under {@code /services/**}.
+     */
+    public static class Gateway {
+
+        private final ResponseCache responseCache = new ResponseCache();
+
+        private final ServicePools servicePools = new ServicePools();
+
+        private final LoadBalancer loadBalancer = new LoadBalancer();
+
+        private final ServiceLimits serviceLimits = new ServiceLimits();
+
+        private final RateLimit rateLimit = new RateLimit();
+
+        private final Hedging hedging = new Hedging();
+
+        public ResponseCache getResponseCache() {
+            return responseCache;
+        }
+
+        public ServicePools getServicePools() {
+            return servicePools;
+        }
+
+        public LoadBalancer getLoadBalancer() {
+            return loadBalancer;
+        }
+
+        public ServiceLimits getServiceLimits() {
+            return serviceLimits;
+        }
+
+        public RateLimit getRateLimit() {
+            return rateLimit;
+        }
+
+        public Hedging getHedging() {
+            return hedging;
+        }
+
+        /**
+         * Cache of the proxied responses, shared by the routes with the {@code ResponseCache} filter.
+         */
+        public static class ResponseCache {
+
+            /**
+             * Total size of the cached bodies, across all the routes.
+             */
+            private DataSize maximumSize = DataSize.ofMegabytes(64);
+
+            /**
+             * Larger responses are not cached.
+             */
+            private DataSize maxEntrySize = DataSize.ofMegabytes(1);
+
+            /**
+             * Keep the cached bodies in direct buffers, outside of the Java heap.
+             */
+            private boolean offHeap = false;
+
+            public DataSize getMaximumSize() {
+                return maximumSize;
+            }
+
+            public void setMaximumSize(DataSize maximumSize) {
+                this.maximumSize = maximumSize;
+            }
+
+            public DataSize getMaxEntrySize() {
+                return maxEntrySize;
+            }
+
+            public void setMaxEntrySize(DataSize maxEntrySize) {
+                this.maxEntrySize = maxEntrySize;
+            }
+
+            public boolean isOffHeap() {
+                return offHeap;
+            }
+
+            public void setOffHeap(boolean offHeap) {
+                this.offHeap = offHeap;
+            }
+        }
+
+        /**
+         * Connection pools of the discovered services, one per service so that a slow one cannot take the connections
+         * of the others.
+         */
+        public static class ServicePools {
+
+            /**
+             * Settings of the services without an entry in {@code services}.
+             */
+            private final Pool defaults = new Pool();
+
+            /**
+             * Settings by service id, in lower case.
+             */
+            private final Map<String, Pool> services = new HashMap<>();
+
+            public Pool getDefaults() {
+                return defaults;
+            }
+
+            public Map<String, Pool> getServices() {
+                return services;
+            }
+        }
+
+        public static class Pool {
+
+            private int maxConnections = 100;
+
+            /**
+             * Requests waiting for a connection beyond this limit fail right away.
+             */
+            private int pendingAcquireMaxCount = 200;
+
+            private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+            private Duration maxIdleTime = Duration.ofSeconds(30);
+
+            private Duration maxLifeTime = Duration.ofMinutes(10);
+
+            /**
+             * How often idle and expired connections are closed in the background.
+             */
+            private Duration evictionInterval = Duration.ofSeconds(30);
+
+            private Duration connectTimeout = Duration.ofSeconds(2);
+
+            private Duration responseTimeout = Duration.ofSeconds(30);
+
+            public int getMaxConnections() {
+                return maxConnections;
+            }
+
+            public void setMaxConnections(int maxConnections) {
+                this.maxConnections = maxConnections;
+            }
+
+            public int getPendingAcquireMaxCount() {
+                return pendingAcquireMaxCount;
+            }
+
+            public void setPendingAcquireMaxCount(int pendingAcquireMaxCount) {
+                this.pendingAcquireMaxCount = pendingAcquireMaxCount;
+            }
+
+            public Duration getPendingAcquireTimeout() {
+                return pendingAcquireTimeout;
+            }
+
+            public void setPendingAcquireTimeout(Duration pendingAcquireTimeout) {
+                this.pendingAcquireTimeout = pendingAcquireTimeout;
+            }
+
+            public Duration getMaxIdleTime() {
+                return maxIdleTime;
+            }
+
+            public void setMaxIdleTime(Duration maxIdleTime) {
+                this.maxIdleTime = maxIdleTime;
+            }
+
+            public Duration getMaxLifeTime() {
+                return maxLifeTime;
+            }
+
+            public void setMaxLifeTime(Duration maxLifeTime) {
+                this.maxLifeTime = maxLifeTime;
+            }
+
+            public Duration getEvictionInterval() {
+                return evictionInterval;
+            }
+
+            public void setEvictionInterval(Duration evictionInterval) {
+                this.evictionInterval = evictionInterval;
+            }
+
+            public Duration getConnectTimeout() {
+                return connectTimeout;
+            }
+
+            public void setConnectTimeout(Duration connectTimeout) {
+                this.connectTimeout = connectTimeout;
+            }
+
+            public Duration getResponseTimeout() {
+                return responseTimeout;
+            }
+
+            public void setResponseTimeout(Duration responseTimeout) {
+                this.responseTimeout = responseTimeout;
+            }
+        }
+
+        /**
+         * Choice of the instance of a discovered service receiving a request.
+         */
+        public static class LoadBalancer {
+
+            private Strategy strategy = Strategy.PEAK_EWMA;
+
+            /**
+             * Time over which the observed latency of an instance decays.
+             */
+            private Duration decayTime = Duration.ofSeconds(10);
+
+            /**
+             * Consecutive failures, errors or 5xx responses, after which an instance is ejected.
+             */
+            private int failureThreshold = 5;
+
+            private Duration ejectionTime = Duration.ofSeconds(30);
+
+            public Strategy getStrategy() {
+                return strategy;
+            }
+
+            public void setStrategy(Strategy strategy) {
+                this.strategy = strategy;
+            }
+
+            public Duration getDecayTime() {
+                return decayTime;
+            }
+
+            public void setDecayTime(Duration decayTime) {
+                this.decayTime = decayTime;
+            }
+
+            public int getFailureThreshold() {
+                return failureThreshold;
+            }
+
+            public void setFailureThreshold(int failureThreshold) {
+                this.failureThreshold = failureThreshold;
+            }
+
+            public Duration getEjectionTime() {
+                return ejectionTime;
+            }
+
+            public void setEjectionTime(Duration ejectionTime) {
+                this.ejectionTime = ejectionTime;
+            }
+
+            public enum Strategy {
+                /**
+                 * The better of two random instances, by latency times the requests in flight.
+                 */
+                PEAK_EWMA,
+                /**
+                 * The better of two random instances, by requests in flight.
+                 */
+                LEAST_IN_FLIGHT,
+                /**
+                 * The Spring Cloud LoadBalancer default, without ejection.
+                 */
+                ROUND_ROBIN
+            }
+        }
+
+        /**
+         * Limits of the requests in flight to each discovered service, beyond which the gateway answers with
+         * {@code 503 (Service Unavailable)} right away.
+         */
+        public static class ServiceLimits {
+
+            /**
+             * Settings of the services without an entry in {@code services}.
+             */
+            private final Limits defaults = new Limits();
+
+            /**
+             * Settings by service id, in lower case.
+             */
+            private final Map<String, Limits> services = new HashMap<>();
+
+            public Limits getDefaults() {
+                return defaults;
+            }
+
+            public Map<String, Limits> getServices() {
+                return services;
+            }
+        }
+
+        public static class Limits {
+
+            /**
+             * Bulkhead: the fixed maximum of requests in flight.
+             */
+            private int maxConcurrentCalls = 100;
+
+            /**
+             * Whether the limit adapts, below the bulkhead, to the latency and the overload responses of the service:
+             * increased by one while the service keeps up, and multiplied by {@code backoffRatio} when it does not.
+             */
+            private boolean adaptive = true;
+
+            private int initialLimit = 20;
+
+            private int minLimit = 5;
+
+            private double backoffRatio = 0.9;
+
+            /**
+             * Responses slower than this are handled as a sign of overload.
+             */
+            private Duration slowCallThreshold = Duration.ofSeconds(5);
+
+            public int getMaxConcurrentCalls() {
+                return maxConcurrentCalls;
+            }
+
+            public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+                this.maxConcurrentCalls = maxConcurrentCalls;
+            }
+
+            public boolean isAdaptive() {
+                return adaptive;
+            }
+
+            public void setAdaptive(boolean adaptive) {
+                this.adaptive = adaptive;
+            }
+
+            public int getInitialLimit() {
+                return initialLimit;
+            }
+
+            public void setInitialLimit(int initialLimit) {
+                this.initialLimit = initialLimit;
+            }
+
+            public int getMinLimit() {
+                return minLimit;
+            }
+
+            public void setMinLimit(int minLimit) {
+                this.minLimit = minLimit;
+            }
+
+            public double getBackoffRatio() {
+                return backoffRatio;
+            }
+
+            public void setBackoffRatio(double backoffRatio) {
+                this.backoffRatio = backoffRatio;
+            }
+
+            public Duration getSlowCallThreshold() {
+                return slowCallThreshold;
+            }
+
+            public void setSlowCallThreshold(Duration slowCallThreshold) {
+                this.slowCallThreshold = slowCallThreshold;
+            }
+        }
+
+        /**
+         * Token buckets of the in-process rate limiter, used by the discovered routes and {@code /api/**}.
+         */
+        public static class RateLimit {
+
+            private KeyBy keyBy = KeyBy.USER;
+
+            /**
+             * Tokens added to a bucket per second.
+             */
+            private int replenishRate = 50;
+
+            /**
+             * Tokens a bucket holds, the largest burst of requests.
+             */
+            private long burstCapacity = 100;
+
+            private long maximumBuckets = 100_000;
+
+            /**
+             * Buckets not used for this time are evicted. Longer than the time to refill a bucket, an evicted bucket
+             * being full anyway.
+             */
+            private Duration idleTimeout = Duration.ofMinutes(10);
+
+            /**
+             * Whether the requests to {@code /api/**}, served by the gateway itself, are limited too.
+             */
+            private boolean api = true;
+
+            public KeyBy getKeyBy() {
+                return keyBy;
+            }
+
+            public void setKeyBy(KeyBy keyBy) {
+                this.keyBy = keyBy;
+            }
+
+            public int getReplenishRate() {
+                return replenishRate;
+            }
+
+            public void setReplenishRate(int replenishRate) {
+                this.replenishRate = replenishRate;
+            }
+
+            public long getBurstCapacity() {
+                return burstCapacity;
+            }
+
+            public void setBurstCapacity(long burstCapacity) {
+                this.burstCapacity = burstCapacity;
+            }
+
+            public long getMaximumBuckets() {
+                return maximumBuckets;
+            }
+
+            public void setMaximumBuckets(long maximumBuckets) {
+                this.maximumBuckets = maximumBuckets;
+            }
+
+            public Duration getIdleTimeout() {
+                return idleTimeout;
+            }
+
+            public void setIdleTimeout(Duration idleTimeout) {
+                this.idleTimeout = idleTimeout;
+            }
+
+            public boolean isApi() {
+                return api;
+            }
+
+            public void setApi(boolean api) {
+                this.api = api;
+            }
+
+            public enum KeyBy {
+                /**
+                 * One bucket per user login, or per client IP for the anonymous requests.
+                 */
+                USER,
+                /**
+                 * One bucket per client IP.
+                 */
+                IP,
+                /**
+                 * One bucket per route, shared by all the clients.
+                 */
+                ROUTE
+            }
+        }
+
+        /**
+         * Hedged requests: a {@code GET} or {@code HEAD} not answered after a delay is sent to a second instance too,
+         * and the first response is kept.
+         */
+        public static class Hedging {
+
+            private boolean enabled = true;
+
+            /**
+             * Percentile of the observed latency of the service after which a request is hedged, 0 to always use
+             * {@code delay}.
+             */
+            private double percentile = 0.95;
+
+            /**
+             * Delay used until {@code min-samples} latencies of the service are observed.
+             */
+            private Duration delay = Duration.ofMillis(200);
+
+            private Duration minDelay = Duration.ofMillis(10);
+
+            private long minSamples = 100;
+
+            private final RetryBudget retryBudget = new RetryBudget();
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public double getPercentile() {
+                return percentile;
+            }
+
+            public void setPercentile(double percentile) {
+                this.percentile = percentile;
+            }
+
+            public Duration getDelay() {
+                return delay;
+            }
+
+            public void setDelay(Duration delay) {
+                this.delay = delay;
+            }
+
+            public Duration getMinDelay() {
+                return minDelay;
+            }
+
+            public void setMinDelay(Duration minDelay) {
+                this.minDelay = minDelay;
+            }
+
+            public long getMinSamples() {
+                return minSamples;
+            }
+
+            public void setMinSamples(long minSamples) {
+                this.minSamples = minSamples;
+            }
+
+            public RetryBudget getRetryBudget() {
+                return retryBudget;
+            }
+
+            /**
+             * Bound of the hedged and retried requests of all the services, so that they cannot amplify an outage.
+             */
+            public static class RetryBudget {
+
+                /**
+                 * Retries allowed per request sent within the window.
+                 */
+                private double ratio = 0.1;
+
+                /**
+                 * Retries allowed anyway, for the services receiving few requests.
+                 */
+                private long minRetriesPerSecond = 10;
+
+                private Duration window = Duration.ofSeconds(10);
+
+                public double getRatio() {
+                    return ratio;
+                }
+
+                public void setRatio(double ratio) {
+                    this.ratio = ratio;
+                }
+
+                public long getMinRetriesPerSecond() {
+                    return minRetriesPerSecond;
+                }
+
+                public void setMinRetriesPerSecond(long minRetriesPerSecond) {
+                    this.minRetriesPerSecond = minRetriesPerSecond;
+                }
+
+                public Duration getWindow() {
+                    return window;
+                }
+
+                public void setWindow(Duration window) {
+                    this.window = window;
+                }
+            }
+        }
+    }
     // jhipster-needle-application-properties-property-class
 }
@@ -0,0 +1,40 @@
+package com.ipa.gateway.config;
+
+import com.ipa.gateway.web.filter.InstanceStatisticsFilter;
+import com.ipa.gateway.web.filter.LatencyAwareLoadBalancer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.RoundRobinLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+/**
+ * Load balancer of each discovered service, registered in the service's own context by
+ * {@link LoadBalancerConfiguration}.
+ * <p>
+ * Not annotated with {@code @Configuration}, so that it is not picked up by the component scan of the application.
+ */
+public class LatencyAwareLoadBalancerConfiguration {
+
+    @Bean
+    public ReactorLoadBalancer<ServiceInstance> reactorServiceInstanceLoadBalancer(
+        Environment environment,
+        LoadBalancerClientFactory loadBalancerClientFactory,
+        InstanceStatisticsFilter instanceStatisticsFilter,
+        ApplicationProperties applicationProperties
+    ) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        ObjectProvider<ServiceInstanceListSupplier> supplierProvider = loadBalancerClientFactory.getLazyProvider(
+            serviceId,
+            ServiceInstanceListSupplier.class
+        );
+        ApplicationProperties.Gateway.LoadBalancer.Strategy strategy = applicationProperties.getGateway().getLoadBalancer().getStrategy();
+        if (strategy == ApplicationProperties.Gateway.LoadBalancer.Strategy.ROUND_ROBIN) {
+            return new RoundRobinLoadBalancer(supplierProvider, serviceId);
+        }
+        return new LatencyAwareLoadBalancer(supplierProvider, serviceId, instanceStatisticsFilter, strategy);
+    }
+}
@@ -4,23 +4,30 @@ import static org.springframework.security.config.Customizer.withDefaults;
 import static org.springframework.security.oauth2.core.oidc.StandardClaimNames.PREFERRED_USERNAME;
 import static org.springframework.security.web.server.util.matcher.ServerWebExchangeMatchers.pathMatchers;
 
-import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.AsyncCache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ipa.gateway.security.AuthoritiesConstants;
 import com.ipa.gateway.security.SecurityUtils;
 import com.ipa.gateway.security.oauth2.AudienceValidator;
+import com.ipa.gateway.security.oauth2.CachingReactiveJwtDecoder;
+import com.ipa.gateway.security.oauth2.JwkSetCache;
+import com.ipa.gateway.security.oauth2.UserInfoJwtDecoder;
+import com.ipa.gateway.web.filter.InProcessRateLimiter;
+import com.ipa.gateway.web.filter.RateLimitWebFilter;
 import com.ipa.gateway.web.filter.SpaWebFilter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
@@ -29,7 +36,6 @@ import org.springframework.security.config.web.server.ServerHttpSecurity;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcReactiveOAuth2UserService;
 import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
-import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.client.userinfo.ReactiveOAuth2UserService;
 import org.springframework.security.oauth2.client.web.server.DefaultServerOAuth2AuthorizationRequestResolver;
@@ -50,6 +56,8 @@ import org.springframework.security.web.server.header.XFrameOptionsServerHttpHea
 import org.springframework.security.web.server.util.matcher.NegatedServerWebExchangeMatcher;
 import org.springframework.security.web.server.util.matcher.OrServerWebExchangeMatcher;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.config.JHipsterProperties;
@@ -59,8 +67,12 @@ import tech.jhipster.web.filter.reactive.CookieCsrfFilter;
 @EnableReactiveMethodSecurity
 public class SecurityConfiguration {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SecurityConfiguration.class);
+
     private final JHipsterProperties jHipsterProperties;
 
+    private final ApplicationProperties applicationProperties;
+
     @Value("${spring.security.oauth2.client.provider.oidc.issuer-uri}")
     private String issuerUri;
 
@@ -68,19 +80,42 @@ public class SecurityConfiguration {
 
     // See https://github.com/jhipster/generator-jhipster/issues/18868
     // We don't use a distributed cache or the user selected cache implementation here on purpose
-    private final Cache<String, Mono<Jwt>> users = Caffeine.newBuilder()
+    // The user info is cached as a future, so that concurrent requests for the same subject share a single IdP call
+    private final AsyncCache<String, Map<String, Object>> users = Caffeine.newBuilder()
         .maximumSize(10_000)
         .expireAfterWrite(Duration.ofHours(1))
         .recordStats()
-        .build();
+        .buildAsync();
+
+    private final WebClient userInfoClient;
+
+    private final WebClient.Builder webClientBuilder;
+
+    private final Disposable.Swap jwkSetRefresh = Disposables.swap();
 
-    public SecurityConfiguration(ReactiveClientRegistrationRepository clientRegistrationRepository, JHipsterProperties jHipsterProperties) {
+    public SecurityConfiguration(
+        ReactiveClientRegistrationRepository clientRegistrationRepository,
+        JHipsterProperties jHipsterProperties,
+        ApplicationProperties applicationProperties,
+        WebClient.Builder webClientBuilder
+    ) {
         this.clientRegistrationRepository = clientRegistrationRepository;
         this.jHipsterProperties = jHipsterProperties;
+        this.applicationProperties = applicationProperties;
+        this.webClientBuilder = webClientBuilder.clone();
+        this.userInfoClient = UserInfoJwtDecoder.createClient(webClientBuilder, applicationProperties.getSecurity().getUserInfo());
     }
 
     @Bean
-    public SecurityWebFilterChain springSecurityFilterChain(ServerHttpSecurity http) {
+    public SecurityWebFilterChain springSecurityFilterChain(
+        ServerHttpSecurity http,
+        InProcessRateLimiter rateLimiter,
+        KeyResolver rateLimitKeyResolver
+    ) {
+        if (applicationProperties.getGateway().getRateLimit().isApi()) {
+            // after the authorization, so that the requests are limited by user
+            http.addFilterAfter(new RateLimitWebFilter(rateLimiter, rateLimitKeyResolver), SecurityWebFiltersOrder.AUTHORIZATION);
+        }
         http
             .securityMatcher(
                 new NegatedServerWebExchangeMatcher(
@@ -201,10 +236,10 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    ReactiveJwtDecoder jwtDecoder(ReactiveClientRegistrationRepository registrations) {
-        Mono<ClientRegistration> clientRegistration = registrations.findByRegistrationId("oidc");
-
-        return clientRegistration
+    ReactiveJwtDecoder jwtDecoder(ReactiveClientRegistrationRepository registrations, MeterRegistry meterRegistry) {
+        // Resolve the decoder lazily, so that a slow IdP does not hold the startup; a failed resolution is retried on the next request
+        Mono<ReactiveJwtDecoder> resolvedDecoder = registrations
+            .findByRegistrationId("oidc")
             .map(oidc ->
                 createJwtDecoder(
                     oidc.getProviderDetails().getIssuerUri(),
@@ -212,64 +247,34 @@ public class SecurityConfiguration {
                     oidc.getProviderDetails().getUserInfoEndpoint().getUri()
                 )
             )
-            .block();
+            .cache(decoder -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO);
+        // Start resolving right away, which also prefetches the JWK set in the background
+        resolvedDecoder.subscribe(decoder -> {}, e -> LOG.warn("Could not create the JWT decoder yet: {}", e.getMessage()));
+
+        ReactiveJwtDecoder jwtDecoder = token -> resolvedDecoder.flatMap(decoder -> decoder.decode(token));
+        ApplicationProperties.Security.JwtCache jwtCache = applicationProperties.getSecurity().getJwtCache();
+        if (!jwtCache.isEnabled()) {
+            return jwtDecoder;
+        }
+        return new CachingReactiveJwtDecoder(jwtDecoder, jwtCache.getMaximumSize(), jwtCache.getTimeToLive(), meterRegistry);
+    }
+
+    @PreDestroy
+    void stopJwkSetRefresh() {
+        jwkSetRefresh.dispose();
     }
 
     private ReactiveJwtDecoder createJwtDecoder(String issuerUri, String jwkSetUri, String userInfoUri) {
-        NimbusReactiveJwtDecoder jwtDecoder = new NimbusReactiveJwtDecoder(jwkSetUri);
+        ApplicationProperties.Security.Jwks jwks = applicationProperties.getSecurity().getJwks();
+        JwkSetCache jwkSetCache = new JwkSetCache(webClientBuilder.build(), jwkSetUri, jwks.getMinRefreshInterval(), jwks.getTimeout());
+        jwkSetRefresh.replace(jwkSetCache.start(jwks.getRefreshInterval()));
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder.withJwkSource(jwkSetCache).build();
         OAuth2TokenValidator<Jwt> audienceValidator = new AudienceValidator(jHipsterProperties.getSecurity().getOauth2().getAudience());
         OAuth2TokenValidator<Jwt> withIssuer = JwtValidators.createDefaultWithIssuer(issuerUri);
         OAuth2TokenValidator<Jwt> withAudience = new DelegatingOAuth2TokenValidator<>(withIssuer, audienceValidator);
 
         jwtDecoder.setJwtValidator(withAudience);
 
-        return new ReactiveJwtDecoder() {
-            @Override
-            public Mono<Jwt> decode(String token) throws JwtException {
-                return jwtDecoder.decode(token).flatMap(jwt -> enrich(token, jwt));
-            }
-
-            private Mono<Jwt> enrich(String token, Jwt jwt) {
-                // Only look up user information if identity claims are missing
-                if (jwt.hasClaim("given_name") && jwt.hasClaim("family_name")) {
-                    return Mono.just(jwt);
-                }
-                // Get user info from `users` cache if present
-                return Optional.ofNullable(users.getIfPresent(jwt.getSubject())).orElseGet(() -> // Retrieve user info from OAuth provider if not already loaded
-                    WebClient.create()
-                        .get()
-                        .uri(userInfoUri)
-                        .headers(headers -> headers.setBearerAuth(token))
-                        .retrieve()
-                        .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                        .map(userInfo ->
-                            Jwt.withTokenValue(jwt.getTokenValue())
-                                .subject(jwt.getSubject())
-                                .audience(jwt.getAudience())
-                                .headers(headers -> headers.putAll(jwt.getHeaders()))
-                                .claims(claims -> {
-                                    String username = userInfo.get("preferred_username").toString();
-                                    // special handling for Auth0
-                                    if (userInfo.get("sub").toString().contains("|") && username.contains("@")) {
-                                        userInfo.put("email", username);
-                                    }
-                                    // Allow full name in a name claim - happens with Auth0
-                                    if (userInfo.get("name") != null) {
-                                        String[] name = userInfo.get("name").toString().split("\\s+");
-                                        if (name.length > 0) {
-                                            userInfo.put("given_name", name[0]);
-                                            userInfo.put("family_name", String.join(" ", Arrays.copyOfRange(name, 1, name.length)));
-                                        }
-                                    }
-                                    claims.putAll(userInfo);
-                                })
-                                .claims(claims -> claims.putAll(jwt.getClaims()))
-                                .build()
-                        )
-                        // Put user info into the `users` cache
-                        .doOnNext(newJwt -> users.put(jwt.getSubject(), Mono.just(newJwt)))
-                );
-            }
-        };
+        return new UserInfoJwtDecoder(jwtDecoder, userInfoClient, userInfoUri, users);
     }
 }
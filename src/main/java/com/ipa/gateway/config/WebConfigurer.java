@@ -1,6 +1,7 @@
 package com.ipa.gateway.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ipa.gateway.web.filter.ImmutableResourcesWebFilter;
 import com.ipa.gateway.web.rest.errors.ExceptionTranslator;
 import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
@@ -85,4 +86,11 @@ public class WebConfigurer implements WebFluxConfigurer {
         // Use a cache filter that only match selected paths
         return new CachingHttpHeadersFilter(TimeUnit.DAYS.toMillis(jHipsterProperties.getHttp().getCache().getTimeToLiveInDays()));
     }
+
+    @Bean
+    @Profile(JHipsterConstants.SPRING_PROFILE_PRODUCTION)
+    public ImmutableResourcesWebFilter immutableResourcesWebFilter() {
+        // The content hashed resources built by webpack never change
+        return new ImmutableResourcesWebFilter();
+    }
 }
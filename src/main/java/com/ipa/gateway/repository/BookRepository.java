@@ -1,6 +1,7 @@
 package com.ipa.gateway.repository;
 
 import com.ipa.gateway.domain.Book;
+import java.util.List;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
@@ -33,6 +34,20 @@ interface BookRepositoryInternal {
 
     Flux<Book> findAllBy(Pageable pageable);
 
+    Flux<Book> findAllBy(Keyset keyset);
+
+    Flux<Book> streamAll(Long afterId, int fetchSize);
+
+    Mono<Book> update(Book book, Book expected);
+
+    Mono<Book> partialUpdate(Book book, Book expected);
+
+    Flux<Book> insertAll(List<Book> books);
+
+    Flux<Boolean> updateAll(List<Book> books);
+
+    Flux<Boolean> deleteAllByIdIn(List<Long> ids);
+
     Flux<Book> findAll();
 
     Mono<Book> findById(Long id);
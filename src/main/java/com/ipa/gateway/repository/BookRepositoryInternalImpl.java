@@ -4,13 +4,19 @@ import com.ipa.gateway.domain.Book;
 import com.ipa.gateway.repository.rowmapper.BookRowMapper;
 import io.r2dbc.spi.Row;
 import io.r2dbc.spi.RowMetadata;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.core.R2dbcEntityOperations;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.repository.support.SimpleR2dbcRepository;
-import org.springframework.data.relational.core.sql.Comparison;
 import org.springframework.data.relational.core.sql.Condition;
 import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.Expression;
@@ -19,7 +25,7 @@ import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJ
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.repository.support.MappingRelationalEntityInformation;
 import org.springframework.r2dbc.core.DatabaseClient;
-import org.springframework.r2dbc.core.RowsFetchSpec;
+import org.springframework.r2dbc.core.Parameter;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -37,6 +43,15 @@ class BookRepositoryInternalImpl extends SimpleR2dbcRepository<Book, Long> imple
 
     private static final Table entityTable = Table.aliased("book", EntityManager.ENTITY_ALIAS);
 
+    private static final String RETURNING_COLUMNS =
+        "RETURNING id AS e_id, name AS e_name, description AS e_description, price AS e_price";
+    private static final String INSERT_SQL = "INSERT INTO book (name, description, price) VALUES ($1, $2, $3) RETURNING id";
+    private static final String UPDATE_SQL = "UPDATE book SET name = $2, description = $3, price = $4 WHERE id = $1 RETURNING id";
+    private static final String DELETE_SQL = "DELETE FROM book WHERE id = $1 RETURNING id";
+    private static final List<Class<?>> INSERT_TYPES = List.of(String.class, String.class, Long.class);
+    private static final List<Class<?>> UPDATE_TYPES = List.of(Long.class, String.class, String.class, Long.class);
+    private static final List<Class<?>> DELETE_TYPES = List.of(Long.class);
+
     public BookRepositoryInternalImpl(
         R2dbcEntityTemplate template,
         EntityManager entityManager,
@@ -57,26 +72,145 @@ class BookRepositoryInternalImpl extends SimpleR2dbcRepository<Book, Long> imple
 
     @Override
     public Flux<Book> findAllBy(Pageable pageable) {
-        return createQuery(pageable, null).all();
+        return createQuery("all", pageable, null).map(this::process).all();
     }
 
-    RowsFetchSpec<Book> createQuery(Pageable pageable, Condition whereClause) {
+    @Override
+    public Flux<Book> findAllBy(Keyset keyset) {
         List<Expression> columns = BookSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
         SelectFromAndJoin selectFrom = Select.builder().select(columns).from(entityTable);
-        // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
-        String select = entityManager.createSelect(selectFrom, Book.class, pageable, whereClause);
-        return db.sql(select).map(this::process);
+        String select = entityManager.createSelect(selectFrom, Book.class, keyset, null);
+        return entityManager.bindKeyset(db.sql(select), Book.class, keyset).map(this::process).all();
+    }
+
+    @Override
+    public Flux<Book> streamAll(Long afterId, int fetchSize) {
+        // ordered by id so that an interrupted stream can be resumed after the last book received
+        Pageable byId = Pageable.unpaged(Sort.by(Keyset.ID_PROPERTY));
+        DatabaseClient.GenericExecuteSpec query = afterId == null
+            ? createQuery("all", byId, null)
+            : createQuery("afterId", byId, () -> Conditions.isGreater(entityTable.column("id"), Conditions.just(":id"))).bind(
+                "id",
+                afterId
+            );
+        return query.filter(statement -> statement.fetchSize(fetchSize)).map(this::process).all();
+    }
+
+    @Override
+    public Mono<Book> update(Book book, Book expected) {
+        Map<String, Parameter> values = new LinkedHashMap<>();
+        values.put("name", Parameter.fromOrEmpty(book.getName(), String.class));
+        values.put("description", Parameter.fromOrEmpty(book.getDescription(), String.class));
+        values.put("price", Parameter.fromOrEmpty(book.getPrice(), Long.class));
+        return updateReturning(book.getId(), values, expected);
+    }
+
+    @Override
+    public Mono<Book> partialUpdate(Book book, Book expected) {
+        // only the non null fields are written, and the whole row is returned by the same statement
+        Map<String, Parameter> values = new LinkedHashMap<>();
+        if (book.getName() != null) {
+            values.put("name", Parameter.from(book.getName()));
+        }
+        if (book.getDescription() != null) {
+            values.put("description", Parameter.from(book.getDescription()));
+        }
+        if (book.getPrice() != null) {
+            values.put("price", Parameter.from(book.getPrice()));
+        }
+        if (values.isEmpty()) {
+            return findById(book.getId()).filter(current -> expected == null || hasSameContent(current, expected));
+        }
+        return updateReturning(book.getId(), values, expected);
+    }
+
+    private Mono<Book> updateReturning(Long id, Map<String, Parameter> values, Book expected) {
+        StringBuilder sql = new StringBuilder("UPDATE book SET ");
+        sql.append(values.keySet().stream().map(column -> column + " = :" + column).collect(Collectors.joining(", ")));
+        sql.append(" WHERE id = :id");
+        if (expected != null) {
+            // compare and set, the row is only written if nobody changed it since it was read
+            sql.append(" AND name IS NOT DISTINCT FROM :expected_name");
+            sql.append(" AND description IS NOT DISTINCT FROM :expected_description");
+            sql.append(" AND price IS NOT DISTINCT FROM :expected_price");
+        }
+        sql.append(' ').append(RETURNING_COLUMNS);
+        DatabaseClient.GenericExecuteSpec spec = db.sql(sql.toString()).bind("id", id);
+        for (Map.Entry<String, Parameter> value : values.entrySet()) {
+            spec = spec.bind(value.getKey(), value.getValue());
+        }
+        if (expected != null) {
+            spec = spec
+                .bind("expected_name", Parameter.fromOrEmpty(expected.getName(), String.class))
+                .bind("expected_description", Parameter.fromOrEmpty(expected.getDescription(), String.class))
+                .bind("expected_price", Parameter.fromOrEmpty(expected.getPrice(), Long.class));
+        }
+        return spec.map(this::process).one();
+    }
+
+    private static boolean hasSameContent(Book book, Book other) {
+        return (
+            Objects.equals(book.getName(), other.getName()) &&
+            Objects.equals(book.getDescription(), other.getDescription()) &&
+            Objects.equals(book.getPrice(), other.getPrice())
+        );
+    }
+
+    @Override
+    public Flux<Book> insertAll(List<Book> books) {
+        List<List<?>> parameters = books
+            .stream()
+            .<List<?>>map(book -> Arrays.asList(book.getName(), book.getDescription(), book.getPrice()))
+            .toList();
+        return entityManager
+            .executeBatch(INSERT_SQL, INSERT_TYPES, parameters, (row, metadata) -> row.get("id", Long.class))
+            .zipWithIterable(books, (ids, book) -> book.id(ids.get(0)));
+    }
+
+    @Override
+    public Flux<Boolean> updateAll(List<Book> books) {
+        List<List<?>> parameters = books
+            .stream()
+            .<List<?>>map(book -> Arrays.asList(book.getId(), book.getName(), book.getDescription(), book.getPrice()))
+            .toList();
+        return entityManager
+            .executeBatch(UPDATE_SQL, UPDATE_TYPES, parameters, (row, metadata) -> row.get("id"))
+            .map(updated -> !updated.isEmpty());
+    }
+
+    @Override
+    public Flux<Boolean> deleteAllByIdIn(List<Long> ids) {
+        List<List<?>> parameters = ids.stream().<List<?>>map(List::of).toList();
+        return entityManager
+            .executeBatch(DELETE_SQL, DELETE_TYPES, parameters, (row, metadata) -> row.get("id"))
+            .map(deleted -> !deleted.isEmpty());
+    }
+
+    /**
+     * Creates a query whose SQL is rendered once per shape, see {@link EntityManager#createSelectTemplate}.
+     * The where clause must use bind markers, bound by the caller.
+     */
+    private DatabaseClient.GenericExecuteSpec createQuery(String shape, Pageable pageable, Supplier<Condition> whereClause) {
+        String select = entityManager.createSelectTemplate(Book.class, shape, pageable, () -> {
+            List<Expression> columns = BookSqlHelper.getColumns(entityTable, EntityManager.ENTITY_ALIAS);
+            SelectFromAndJoin selectFrom = Select.builder().select(columns).from(entityTable);
+            // we do not support Criteria here for now as of https://github.com/jhipster/generator-jhipster/issues/18269
+            return whereClause == null ? selectFrom : selectFrom.where(whereClause.get());
+        });
+        return entityManager.bindPage(db.sql(select), pageable);
     }
 
     @Override
     public Flux<Book> findAll() {
-        return findAllBy(null);
+        return findAllBy((Pageable) null);
     }
 
     @Override
     public Mono<Book> findById(Long id) {
-        Comparison whereClause = Conditions.isEqual(entityTable.column("id"), Conditions.just(id.toString()));
-        return createQuery(null, whereClause).one();
+        return createQuery("byId", null, () -> Conditions.isEqual(entityTable.column("id"), Conditions.just(":id")))
+            .bind("id", id)
+            .map(this::process)
+            .one();
     }
 
     private Book process(Row row, RowMetadata metadata) {
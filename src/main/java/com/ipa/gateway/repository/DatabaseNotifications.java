@@ -0,0 +1,88 @@
+package com.ipa.gateway.repository;
+
+import io.r2dbc.postgresql.PostgresqlConnectionFactory;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Wrapped;
+import java.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Helper class to publish and receive PostgreSQL {@code NOTIFY} messages, used to tell the other instances that
+ * data they keep in memory changed.
+ */
+@Component
+public class DatabaseNotifications {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseNotifications.class);
+
+    private final DatabaseClient databaseClient;
+
+    private final ConnectionFactory connectionFactory;
+
+    public DatabaseNotifications(DatabaseClient databaseClient, ConnectionFactory connectionFactory) {
+        this.databaseClient = databaseClient;
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * Sends a notification on the given channel, delivered when the current transaction commits.
+     *
+     * @param channel the channel name.
+     * @param payload the payload, may be empty.
+     * @return a completed {@link Mono}.
+     */
+    public Mono<Void> notify(String channel, String payload) {
+        return databaseClient.sql("SELECT pg_notify(:channel, :payload)").bind("channel", channel).bind("payload", payload).then();
+    }
+
+    /**
+     * Listens to the given channel on a dedicated connection, outside of the connection pool.
+     * <p>
+     * An empty payload is emitted each time the listener (re)connects, as notifications sent while it was
+     * disconnected are lost. The connection is opened again with a backoff when it drops.
+     *
+     * @param channel the channel name, which must be a valid SQL identifier.
+     * @return the payloads of the notifications.
+     */
+    public Flux<String> listen(String channel) {
+        Assert.isTrue(channel.matches("[a-z_][a-z0-9_]*"), "Invalid channel name: " + channel);
+        return Flux.usingWhen(
+            Mono.defer(() -> Mono.from(unwrap(connectionFactory).create())),
+            connection ->
+                connection
+                    .createStatement("LISTEN " + channel)
+                    .execute()
+                    .flatMap(PostgresqlResult::getRowsUpdated)
+                    .then()
+                    .thenMany(
+                        Flux.concat(Mono.just(""), connection.getNotifications().map(n -> n.getParameter() == null ? "" : n.getParameter()))
+                    )
+                    .concatWith(Mono.error(() -> new IllegalStateException("Connection listening to " + channel + " was closed"))),
+            PostgresqlConnection::close
+        ).retryWhen(
+            Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                .maxBackoff(Duration.ofMinutes(1))
+                .doBeforeRetry(signal -> LOG.warn("Listening to {} failed, reconnecting: {}", channel, signal.failure().getMessage()))
+        );
+    }
+
+    private static PostgresqlConnectionFactory unwrap(ConnectionFactory connectionFactory) {
+        ConnectionFactory factory = connectionFactory;
+        while (!(factory instanceof PostgresqlConnectionFactory) && factory instanceof Wrapped<?> wrapped) {
+            factory = (ConnectionFactory) wrapped.unwrap();
+        }
+        if (factory instanceof PostgresqlConnectionFactory postgresqlConnectionFactory) {
+            return postgresqlConnectionFactory;
+        }
+        throw new IllegalStateException("Notifications need a PostgreSQL connection factory, got " + connectionFactory);
+    }
+}
@@ -1,18 +1,28 @@
 package com.ipa.gateway.repository;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import io.r2dbc.spi.Statement;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
+import org.springframework.core.convert.ConversionService;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.core.StatementMapper;
 import org.springframework.data.r2dbc.query.UpdateMapper;
 import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.data.relational.core.query.Criteria;
 import org.springframework.data.relational.core.sql.Column;
 import org.springframework.data.relational.core.sql.Condition;
+import org.springframework.data.relational.core.sql.Conditions;
 import org.springframework.data.relational.core.sql.OrderByField;
 import org.springframework.data.relational.core.sql.Select;
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJoin;
@@ -20,7 +30,7 @@ import org.springframework.data.relational.core.sql.SelectBuilder.SelectFromAndJ
 import org.springframework.data.relational.core.sql.SelectBuilder.SelectOrdered;
 import org.springframework.data.relational.core.sql.Table;
 import org.springframework.data.relational.core.sql.render.SqlRenderer;
-import org.springframework.r2dbc.core.Parameter;
+import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
 import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
@@ -35,6 +45,15 @@ public class EntityManager {
 
     public static final String ENTITY_ALIAS = "e";
     public static final String ALIAS_PREFIX = "e_";
+    public static final String KEYSET_VALUE_PARAMETER = "keyset_value";
+    public static final String KEYSET_ID_PARAMETER = "keyset_id";
+    public static final String LIMIT_PARAMETER = "limit";
+    public static final String OFFSET_PARAMETER = "offset";
+
+    /**
+     * Bind parameters rendered in a single multi-row insert, well below the 65535 PostgreSQL allows.
+     */
+    private static final int MAX_BIND_PARAMETERS = 10_000;
 
     public static class LinkTable {
 
@@ -56,6 +75,7 @@ public class EntityManager {
     private final UpdateMapper updateMapper;
     private final R2dbcEntityTemplate r2dbcEntityTemplate;
     private final StatementMapper statementMapper;
+    private final Cache<List<Object>, String> sqlTemplates = Caffeine.newBuilder().maximumSize(1_000).build();
 
     public EntityManager(SqlRenderer sqlRenderer, UpdateMapper updateMapper, R2dbcEntityTemplate r2dbcEntityTemplate) {
         this.sqlRenderer = sqlRenderer;
@@ -128,6 +148,82 @@ public class EntityManager {
         }
     }
 
+    /**
+     * Returns the SQL select statement for the given entity, rendered only once per shape of the statement, sort, and
+     * whether it is paged. The statement must not inline any value, but use bind markers instead: the paging
+     * parameters are bound with {@link #bindPage}, so that the database can reuse the prepared statement.
+     * @param entityType the entity type which holds the table name.
+     * @param shape identifies the columns, joins and where clause built by {@code selectFrom}, unique per entity type.
+     * @param pageable page parameter, or null, if everything needs to be returned.
+     * @param selectFrom builds the select statement, called when it is not rendered yet.
+     * @return sql select statement
+     */
+    public String createSelectTemplate(Class<?> entityType, String shape, Pageable pageable, Supplier<SelectOrdered> selectFrom) {
+        boolean paged = pageable != null && pageable.isPaged();
+        Sort sort = pageable == null ? Sort.unsorted() : pageable.getSort();
+        return sqlTemplates.get(List.of(entityType, shape, sort, paged), key -> {
+            String select = createSelectImpl(selectFrom.get(), entityType, sort);
+            return paged ? select + " LIMIT :" + LIMIT_PARAMETER + " OFFSET :" + OFFSET_PARAMETER : select;
+        });
+    }
+
+    /**
+     * Binds the paging parameters to a statement created by {@link #createSelectTemplate}.
+     * @param spec the statement to bind.
+     * @param pageable page parameter, or null, if everything needs to be returned.
+     * @return the bound statement.
+     */
+    public DatabaseClient.GenericExecuteSpec bindPage(DatabaseClient.GenericExecuteSpec spec, Pageable pageable) {
+        if (pageable == null || pageable.isUnpaged()) {
+            return spec;
+        }
+        return spec.bind(LIMIT_PARAMETER, pageable.getPageSize()).bind(OFFSET_PARAMETER, pageable.getOffset());
+    }
+
+    /**
+     * Creates an SQL select statement from the given fragment and keyset pagination parameters.
+     * <p>
+     * Instead of an {@code OFFSET}, the rows are sought past the cursor of the keyset, so the cost of a page does not
+     * depend on its depth. One more row than the page size is fetched, to tell whether another page follows.
+     * The cursor values are rendered as bind markers, see {@link #bindKeyset}.
+     * @param selectFrom a representation of a select statement, the entity table must be aliased as {@link #ENTITY_ALIAS}.
+     * @param entityType the entity type which holds the table name.
+     * @param keyset the keyset pagination parameters.
+     * @param where condition or null. The condition to apply as where clause.
+     * @return sql select statement
+     */
+    public String createSelect(SelectFromAndJoin selectFrom, Class<?> entityType, Keyset keyset, Condition where) {
+        Condition seek = createKeysetCondition(entityType, keyset);
+        Condition condition = where == null ? seek : seek == null ? where : where.and(seek);
+        SelectFromAndJoin limited = selectFrom.limit(keyset.getSize() + 1L);
+        if (condition != null) {
+            return createSelectImpl(limited.where(condition), entityType, keyset.getScanSort());
+        }
+        return createSelectImpl(limited, entityType, keyset.getScanSort());
+    }
+
+    /**
+     * Binds the cursor values of the keyset to a statement created by {@link #createSelect(SelectFromAndJoin, Class, Keyset, Condition)},
+     * converted to the types of the entity properties.
+     * @param spec the statement to bind.
+     * @param entityType the entity type which holds the properties.
+     * @param keyset the keyset pagination parameters.
+     * @return the bound statement.
+     */
+    public DatabaseClient.GenericExecuteSpec bindKeyset(DatabaseClient.GenericExecuteSpec spec, Class<?> entityType, Keyset keyset) {
+        if (!keyset.hasCursor()) {
+            return spec;
+        }
+        RelationalPersistentEntity<?> entity = getRequiredPersistentEntity(entityType);
+        ConversionService conversionService = r2dbcEntityTemplate.getConverter().getConversionService();
+        spec = spec.bind(KEYSET_ID_PARAMETER, conversionService.convert(keyset.getId(), entity.getRequiredIdProperty().getType()));
+        if (keyset.getValue() != null && !Keyset.ID_PROPERTY.equals(keyset.getProperty())) {
+            Class<?> type = getKeysetProperty(entity, keyset).getType();
+            spec = spec.bind(KEYSET_VALUE_PARAMETER, conversionService.convert(keyset.getValue(), type));
+        }
+        return spec;
+    }
+
     /**
      * Generate an actual SQL from the given {@link Select}.
      * @param select a representation of a select statement.
@@ -137,6 +233,22 @@ public class EntityManager {
         return sqlRenderer.render(select);
     }
 
+    /**
+     * Returns the planner estimate of the number of rows of the entity table, as maintained by {@code ANALYZE}.
+     * @param entityType the entity type which holds the table name.
+     * @return the estimated number of rows, or empty if the table has never been analyzed.
+     */
+    public Mono<Long> estimateCount(Class<?> entityType) {
+        String tableName = getRequiredPersistentEntity(entityType).getTableName().getReference();
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .sql("SELECT reltuples::bigint AS estimate FROM pg_class WHERE oid = to_regclass(:tableName)")
+            .bind("tableName", tableName)
+            .map(row -> row.get("estimate", Long.class))
+            .one()
+            .filter(estimate -> estimate >= 0);
+    }
+
     /**
      * Delete all the entity with the given type, and return the number of deletions.
      * @param entityType the entity type which holds the table name.
@@ -175,22 +287,110 @@ public class EntityManager {
      */
     public Mono<Long> updateLinkTable(LinkTable table, Object entityId, Stream<?> referencedIds) {
         return deleteFromLinkTable(table, entityId).then(
-            Flux.fromStream(referencedIds)
-                .flatMap((Object referenceId) -> {
-                    StatementMapper.InsertSpec insert = r2dbcEntityTemplate
-                        .getDataAccessStrategy()
-                        .getStatementMapper()
-                        .createInsert(table.tableName)
-                        .withColumn(table.idColumn, Parameter.from(entityId))
-                        .withColumn(table.referenceColumn, Parameter.from(referenceId));
-
-                    return r2dbcEntityTemplate.getDatabaseClient().sql(statementMapper.getMappedObject(insert)).fetch().rowsUpdated();
-                })
-                .collectList()
-                .map((List<Long> updates) -> updates.stream().reduce(Long::sum).orElse(0l))
+            Mono.defer(() -> insertIntoLinkTable(table, entityId, referencedIds.toList(), false))
         );
     }
 
+    /**
+     * Inserts the links between the entity and the referred entities, with one statement per batch of rows.
+     * @param table describes the link table, it contains a table name, the column name for the id, and for the referred entity id.
+     * @param entityId the id of the entity, for which the links are created.
+     * @param referencedIds the id of the referred entities.
+     * @param ignoreConflicts whether links which already exist are skipped instead of failing the insert.
+     * @return the number of inserted rows.
+     */
+    public Mono<Long> insertIntoLinkTable(LinkTable table, Object entityId, Collection<?> referencedIds, boolean ignoreConflicts) {
+        Assert.notNull(entityId, "entityId is null");
+        List<List<?>> rows = referencedIds.stream().<List<?>>map(referenceId -> List.of(entityId, referenceId)).toList();
+        return insertRows(table.tableName, List.of(table.idColumn, table.referenceColumn), rows, ignoreConflicts);
+    }
+
+    /**
+     * Inserts the given rows with multi-row {@code INSERT ... VALUES (...), (...)} statements, so that a batch
+     * costs one round-trip instead of one per row.
+     * @param tableName the name of the table.
+     * @param columns the names of the columns, in the order of the row values.
+     * @param rows the non null values of each row.
+     * @param ignoreConflicts whether rows violating a unique constraint are skipped ({@code ON CONFLICT DO NOTHING})
+     *                        instead of failing the insert.
+     * @return the number of inserted rows.
+     */
+    public Mono<Long> insertRows(String tableName, List<String> columns, List<? extends List<?>> rows, boolean ignoreConflicts) {
+        Assert.notEmpty(columns, "columns is empty");
+        int batchSize = Math.max(1, MAX_BIND_PARAMETERS / columns.size());
+        return Flux.range(0, (rows.size() + batchSize - 1) / batchSize)
+            .concatMap(batch -> {
+                List<? extends List<?>> batchRows = rows.subList(batch * batchSize, Math.min(rows.size(), (batch + 1) * batchSize));
+                StringBuilder sql = new StringBuilder("INSERT INTO ")
+                    .append(tableName)
+                    .append(" (")
+                    .append(String.join(", ", columns))
+                    .append(") VALUES ");
+                for (int row = 0; row < batchRows.size(); row++) {
+                    Assert.isTrue(batchRows.get(row).size() == columns.size(), "row has not as many values as columns");
+                    sql.append(row == 0 ? "(" : ", (");
+                    for (int column = 0; column < columns.size(); column++) {
+                        sql.append(column == 0 ? ":p" : ", :p").append(row * columns.size() + column);
+                    }
+                    sql.append(')');
+                }
+                if (ignoreConflicts) {
+                    sql.append(" ON CONFLICT DO NOTHING");
+                }
+                DatabaseClient.GenericExecuteSpec spec = r2dbcEntityTemplate.getDatabaseClient().sql(sql.toString());
+                for (int row = 0; row < batchRows.size(); row++) {
+                    List<?> values = batchRows.get(row);
+                    for (int column = 0; column < columns.size(); column++) {
+                        spec = spec.bind("p" + (row * columns.size() + column), values.get(column));
+                    }
+                }
+                return spec.fetch().rowsUpdated();
+            })
+            .reduce(0L, Long::sum);
+    }
+
+    /**
+     * Executes the statement once per row of parameters, batched with {@link Statement#add()} so that the driver
+     * sends all the executions at once instead of waiting for each result. Parameters are bound by position, as
+     * {@code $1}, {@code $2}...
+     * @param <T> the type of the mapped rows.
+     * @param sql the statement.
+     * @param parameterTypes the types of the parameters, used to bind null values.
+     * @param parameters the values of the parameters, for each execution.
+     * @param mapper maps the rows returned by the statement, for example with {@code RETURNING}.
+     * @return for each row of parameters, in order, the rows returned by its execution.
+     */
+    public <T> Flux<List<T>> executeBatch(
+        String sql,
+        List<Class<?>> parameterTypes,
+        List<? extends List<?>> parameters,
+        BiFunction<Row, RowMetadata, T> mapper
+    ) {
+        if (parameters.isEmpty()) {
+            return Flux.empty();
+        }
+        return r2dbcEntityTemplate
+            .getDatabaseClient()
+            .inConnectionMany(connection -> {
+                Statement statement = connection.createStatement(sql);
+                for (int row = 0; row < parameters.size(); row++) {
+                    if (row > 0) {
+                        statement.add();
+                    }
+                    List<?> values = parameters.get(row);
+                    Assert.isTrue(values.size() == parameterTypes.size(), "row has not as many values as parameter types");
+                    for (int index = 0; index < values.size(); index++) {
+                        if (values.get(index) == null) {
+                            statement.bindNull(index, parameterTypes.get(index));
+                        } else {
+                            statement.bind(index, values.get(index));
+                        }
+                    }
+                }
+                return Flux.from(statement.execute()).concatMap(result -> Flux.from(result.map(mapper)).collectList());
+            });
+    }
+
     public Mono<Void> deleteFromLinkTable(LinkTable table, Object entityId) {
         Assert.notNull(entityId, "entityId is null");
         StatementMapper.DeleteSpec deleteSpec = r2dbcEntityTemplate
@@ -213,6 +413,43 @@ public class EntityManager {
         return createSelect(selectFrom.build());
     }
 
+    private Condition createKeysetCondition(Class<?> entityType, Keyset keyset) {
+        if (!keyset.hasCursor()) {
+            return null;
+        }
+        RelationalPersistentEntity<?> entity = getRequiredPersistentEntity(entityType);
+        String id = ENTITY_ALIAS + "." + entity.getRequiredIdProperty().getColumnName().getReference();
+        String comparator = keyset.isScanAscending() ? " > " : " < ";
+        String idCondition = id + comparator + ":" + KEYSET_ID_PARAMETER;
+        if (Keyset.ID_PROPERTY.equals(keyset.getProperty())) {
+            return Conditions.just(idCondition);
+        }
+        String column = ENTITY_ALIAS + "." + getKeysetProperty(entity, keyset).getColumnName().getReference();
+        String value = ":" + KEYSET_VALUE_PARAMETER;
+        // PostgreSQL sorts nulls last in ascending order and first in descending order
+        if (keyset.getValue() == null) {
+            return Conditions.just(
+                keyset.isScanAscending()
+                    ? "(" + column + " IS NULL AND " + idCondition + ")"
+                    : "((" + column + " IS NULL AND " + idCondition + ") OR " + column + " IS NOT NULL)"
+            );
+        }
+        String seek = column + comparator + value + " OR (" + column + " = " + value + " AND " + idCondition + ")";
+        return Conditions.just(keyset.isScanAscending() ? "(" + seek + " OR " + column + " IS NULL)" : "(" + seek + ")");
+    }
+
+    private RelationalPersistentProperty getKeysetProperty(RelationalPersistentEntity<?> entity, Keyset keyset) {
+        RelationalPersistentProperty property = entity.getPersistentProperty(keyset.getProperty());
+        if (property == null || property.isTransient()) {
+            throw new IllegalArgumentException("Unknown sort property: " + keyset.getProperty());
+        }
+        return property;
+    }
+
+    private RelationalPersistentEntity<?> getRequiredPersistentEntity(Class<?> entityType) {
+        return r2dbcEntityTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(entityType);
+    }
+
     private RelationalPersistentEntity<?> getPersistentEntity(Class<?> entityType) {
         return r2dbcEntityTemplate.getConverter().getMappingContext().getPersistentEntity(entityType);
     }
@@ -0,0 +1,144 @@
+package com.ipa.gateway.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.Assert;
+
+/**
+ * Keyset (seek) pagination request: a page size, a single sort property and an optional opaque cursor.
+ * <p>
+ * An {@code after} cursor points at the last row of the previous page, a {@code before} cursor at the first row
+ * of the next page. Rows are always ordered by the sort property and then by id, so the cursor holds both values.
+ * Only the first order of the given {@link Sort} is used.
+ */
+public final class Keyset {
+
+    public static final String ID_PROPERTY = "id";
+
+    private static final String NULL_SEGMENT = "~";
+
+    private final String property;
+    private final boolean ascending;
+    private final int size;
+    private final boolean backward;
+    private final boolean hasCursor;
+    private final String value;
+    private final String id;
+
+    private Keyset(String property, boolean ascending, int size, boolean backward, boolean hasCursor, String value, String id) {
+        this.property = property;
+        this.ascending = ascending;
+        this.size = size;
+        this.backward = backward;
+        this.hasCursor = hasCursor;
+        this.value = value;
+        this.id = id;
+    }
+
+    /**
+     * Creates a keyset request.
+     * @param sort the requested sort, only its first order is used; defaults to the id ascending.
+     * @param size the page size.
+     * @param after the cursor to read after, or an empty string for the first page.
+     * @param before the cursor to read before, or an empty string for the last page.
+     * @return the keyset request.
+     * @throws IllegalArgumentException if both cursors are given, or a cursor is malformed.
+     */
+    public static Keyset of(Sort sort, int size, String after, String before) {
+        Assert.isTrue(size > 0, "size must be positive");
+        if (after != null && before != null) {
+            throw new IllegalArgumentException("Only one of 'after' and 'before' can be given");
+        }
+        Sort.Order order = sort == null ? null : sort.stream().findFirst().orElse(null);
+        String property = order == null ? ID_PROPERTY : order.getProperty();
+        boolean ascending = order == null || order.isAscending();
+        boolean backward = before != null;
+        String cursor = backward ? before : after;
+        if (cursor == null || cursor.isEmpty()) {
+            return new Keyset(property, ascending, size, backward, false, null, null);
+        }
+        String[] segments = cursor.split("\\.", -1);
+        if (segments.length != 2 || NULL_SEGMENT.equals(segments[1])) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new Keyset(property, ascending, size, backward, true, decodeSegment(segments[0]), decodeSegment(segments[1]));
+    }
+
+    /**
+     * Creates the opaque cursor of a row.
+     * @param value the value of the sort property of the row.
+     * @param id the id of the row.
+     * @return the cursor.
+     */
+    public static String cursor(Object value, Object id) {
+        Assert.notNull(id, "id is null");
+        return encodeSegment(value) + "." + encodeSegment(id);
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return true if the page is read before the cursor, rows are then fetched in the reverse order.
+     */
+    public boolean isBackward() {
+        return backward;
+    }
+
+    public boolean hasCursor() {
+        return hasCursor;
+    }
+
+    /**
+     * @return the sort property value of the cursor, {@code null} if the cursor row has no value.
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the rows are fetched in ascending order, taking the direction of the page into account.
+     */
+    public boolean isScanAscending() {
+        return ascending != backward;
+    }
+
+    /**
+     * @return the sort in which the rows are fetched from the database.
+     */
+    public Sort getScanSort() {
+        Sort.Direction direction = isScanAscending() ? Sort.Direction.ASC : Sort.Direction.DESC;
+        if (ID_PROPERTY.equals(property)) {
+            return Sort.by(direction, ID_PROPERTY);
+        }
+        return Sort.by(direction, property, ID_PROPERTY);
+    }
+
+    private static String encodeSegment(Object value) {
+        if (value == null) {
+            return NULL_SEGMENT;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeSegment(String segment) {
+        if (NULL_SEGMENT.equals(segment)) {
+            return null;
+        }
+        return new String(Base64.getUrlDecoder().decode(segment), StandardCharsets.UTF_8);
+    }
+}
@@ -2,16 +2,22 @@ package com.ipa.gateway.repository;
 
 import com.ipa.gateway.domain.Authority;
 import com.ipa.gateway.domain.User;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
-import org.apache.commons.beanutils.BeanComparator;
 import org.springframework.data.domain.*;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import org.springframework.data.relational.core.mapping.RelationalPersistentEntity;
+import org.springframework.data.relational.core.mapping.RelationalPersistentProperty;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
@@ -32,9 +38,6 @@ public interface UserRepository extends R2dbcRepository<User, String>, UserRepos
 
     Mono<Long> count();
 
-    @Query("INSERT INTO jhi_user_authority VALUES(:userId, :authority)")
-    Mono<Void> saveUserAuthority(String userId, String authority);
-
     @Query("DELETE FROM jhi_user_authority")
     Mono<Void> deleteAllUserAuthorities();
 
@@ -48,18 +51,33 @@ interface UserRepositoryInternal {
     Mono<User> create(User user);
 
     Flux<User> findAllWithAuthorities(Pageable pageable);
+
+    Mono<Long> saveUserAuthorities(String userId, Collection<String> authorities);
 }
 
 class UserRepositoryInternalImpl implements UserRepositoryInternal {
 
+    private static final EntityManager.LinkTable USER_AUTHORITY = new EntityManager.LinkTable(
+        "jhi_user_authority",
+        "user_id",
+        "authority_name"
+    );
+
     private final DatabaseClient db;
     private final R2dbcEntityTemplate r2dbcEntityTemplate;
     private final R2dbcConverter r2dbcConverter;
-
-    public UserRepositoryInternalImpl(DatabaseClient db, R2dbcEntityTemplate r2dbcEntityTemplate, R2dbcConverter r2dbcConverter) {
+    private final EntityManager entityManager;
+
+    public UserRepositoryInternalImpl(
+        DatabaseClient db,
+        R2dbcEntityTemplate r2dbcEntityTemplate,
+        R2dbcConverter r2dbcConverter,
+        EntityManager entityManager
+    ) {
         this.db = db;
         this.r2dbcEntityTemplate = r2dbcEntityTemplate;
         this.r2dbcConverter = r2dbcConverter;
+        this.entityManager = entityManager;
     }
 
     @Override
@@ -69,28 +87,70 @@ class UserRepositoryInternalImpl implements UserRepositoryInternal {
 
     @Override
     public Flux<User> findAllWithAuthorities(Pageable pageable) {
-        String property = pageable.getSort().stream().map(Sort.Order::getProperty).findFirst().orElse("id");
-        String direction = String.valueOf(
-            pageable.getSort().stream().map(Sort.Order::getDirection).findFirst().orElse(Sort.DEFAULT_DIRECTION)
-        );
-        long page = pageable.getPageNumber();
-        long size = pageable.getPageSize();
+        // Page and sort in the database first, so that only the users of the requested page are joined
+        // with their authorities, which are then aggregated into one row per user.
+        String orderBy = createOrderBy(pageable.getSort());
+        String sql =
+            "SELECT u.*, a.authorities FROM (SELECT * FROM jhi_user " +
+            orderBy +
+            " LIMIT :limit OFFSET :offset) u" +
+            " LEFT JOIN LATERAL (SELECT array_agg(ua.authority_name) AS authorities" +
+            " FROM jhi_user_authority ua WHERE ua.user_id = u.id) a ON true " +
+            orderBy;
 
         return db
-            .sql("SELECT * FROM jhi_user u LEFT JOIN jhi_user_authority ua ON u.id=ua.user_id")
-            .map((row, metadata) ->
-                Tuples.of(r2dbcConverter.read(User.class, row, metadata), Optional.ofNullable(row.get("authority_name", String.class)))
-            )
-            .all()
-            .groupBy(t -> t.getT1().getLogin())
-            .flatMap(l -> l.collectList().map(t -> updateUserWithAuthorities(t.get(0).getT1(), t)))
-            .sort(
-                Sort.Direction.fromString(direction) == Sort.DEFAULT_DIRECTION
-                    ? new BeanComparator<>(property)
-                    : new BeanComparator<>(property).reversed()
-            )
-            .skip(page * size)
-            .take(size);
+            .sql(sql)
+            .bind("limit", pageable.getPageSize())
+            .bind("offset", pageable.getOffset())
+            .map((row, metadata) -> {
+                User user = r2dbcConverter.read(User.class, row, metadata);
+                String[] authorities = row.get("authorities", String[].class);
+                user.setAuthorities(
+                    authorities == null
+                        ? new HashSet<>()
+                        : Arrays.stream(authorities)
+                            .filter(Objects::nonNull)
+                            .map(name -> {
+                                Authority authority = new Authority();
+                                authority.setName(name);
+                                return authority;
+                            })
+                            .collect(Collectors.toSet())
+                );
+                return user;
+            })
+            .all();
+    }
+
+    /**
+     * Renders the {@code ORDER BY} clause for the given sort. Only properties mapped on {@link User} are accepted,
+     * and the id is always appended as a tie-breaker so that pages are stable.
+     */
+    private String createOrderBy(Sort sort) {
+        RelationalPersistentEntity<?> entity = r2dbcConverter.getMappingContext().getRequiredPersistentEntity(User.class);
+        List<String> fields = new ArrayList<>();
+        boolean hasId = false;
+        for (Sort.Order order : sort) {
+            RelationalPersistentProperty property = entity.getPersistentProperty(order.getProperty());
+            if (property == null || property.isTransient()) {
+                throw new IllegalArgumentException("Unknown sort property for User: " + order.getProperty());
+            }
+            String column = property.getColumnName().getReference();
+            hasId |= property.isIdProperty();
+            fields.add(column + (order.isAscending() ? " ASC" : " DESC"));
+        }
+        if (!hasId) {
+            fields.add("id ASC");
+        }
+        return "ORDER BY " + String.join(", ", fields);
+    }
+
+    @Override
+    public Mono<Long> saveUserAuthorities(String userId, Collection<String> authorities) {
+        if (authorities.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return entityManager.insertIntoLinkTable(USER_AUTHORITY, userId, authorities, true);
     }
 
     @Override
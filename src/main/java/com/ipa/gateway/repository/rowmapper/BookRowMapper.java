@@ -1,18 +1,36 @@
 package com.ipa.gateway.repository.rowmapper;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ipa.gateway.domain.Book;
 import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import org.springframework.stereotype.Service;
 
 /**
  * Converter between {@link Row} to {@link Book}, with proper type conversions.
+ * <p>
+ * The columns are resolved once per {@link RowMetadata}, which the driver shares between the rows of a result, and
+ * kept while the result is referenced, so that concurrent results do not resolve them again for each other's rows.
  */
 @Service
 public class BookRowMapper implements BiFunction<Row, String, Book> {
 
     private final ColumnConverter converter;
 
+    /**
+     * Columns per prefix of each result, the metadata being compared by identity and weakly referenced.
+     */
+    private final Cache<RowMetadata, Map<String, Columns>> columnsByResult = Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * Columns of the result last mapped, read without a lookup by the following rows of the same result.
+     */
+    private volatile Resolved last;
+
     public BookRowMapper(ColumnConverter converter) {
         this.converter = converter;
     }
@@ -23,11 +41,41 @@ public class BookRowMapper implements BiFunction<Row, String, Book> {
      */
     @Override
     public Book apply(Row row, String prefix) {
+        Columns columns = getColumns(row.getMetadata(), prefix);
         Book entity = new Book();
-        entity.setId(converter.fromRow(row, prefix + "_id", Long.class));
-        entity.setName(converter.fromRow(row, prefix + "_name", String.class));
-        entity.setDescription(converter.fromRow(row, prefix + "_description", String.class));
-        entity.setPrice(converter.fromRow(row, prefix + "_price", Long.class));
+        entity.setId(columns.id.read(row));
+        entity.setName(columns.name.read(row));
+        entity.setDescription(columns.description.read(row));
+        entity.setPrice(columns.price.read(row));
         return entity;
     }
+
+    private Columns getColumns(RowMetadata metadata, String prefix) {
+        Resolved current = last;
+        if (current != null && current.metadata == metadata && current.prefix.equals(prefix)) {
+            return current.columns;
+        }
+        Columns columns = columnsByResult
+            .get(metadata, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(prefix, key -> new Columns(metadata, key));
+        last = new Resolved(metadata, prefix, columns);
+        return columns;
+    }
+
+    private record Resolved(RowMetadata metadata, String prefix, Columns columns) {}
+
+    private final class Columns {
+
+        private final ColumnReader<Long> id;
+        private final ColumnReader<String> name;
+        private final ColumnReader<String> description;
+        private final ColumnReader<Long> price;
+
+        private Columns(RowMetadata metadata, String prefix) {
+            this.id = converter.reader(metadata, prefix + "_id", Long.class);
+            this.name = converter.reader(metadata, prefix + "_name", String.class);
+            this.description = converter.reader(metadata, prefix + "_description", String.class);
+            this.price = converter.reader(metadata, prefix + "_price", Long.class);
+        }
+    }
 }
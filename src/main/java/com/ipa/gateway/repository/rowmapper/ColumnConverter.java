@@ -1,6 +1,9 @@
 package com.ipa.gateway.repository.rowmapper;
 
+import io.r2dbc.spi.ColumnMetadata;
 import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.List;
 import org.springframework.core.convert.ConversionService;
 import org.springframework.data.r2dbc.convert.R2dbcConverter;
 import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
@@ -57,12 +60,32 @@ public class ColumnConverter implements ColumnConverterReactive {
      * @return the value which can be constructed from the input.
      */
     public <T> T fromRow(Row row, String columnName, Class<T> target) {
-        try {
-            // try, directly the driver
-            return row.get(columnName, target);
-        } catch (Exception e) {
-            Object obj = row.get(columnName);
-            return convert(obj, target);
+        return reader(row.getMetadata(), columnName, target).read(row);
+    }
+
+    /**
+     * Resolves how to read a column of the rows described by the given metadata, to map many rows without looking
+     * up the column by name for each of them: the column is read by position, directly from the driver when it
+     * decodes the column to the target type, otherwise through {@link #convert}.
+     * @param metadata the metadata of the rows to read.
+     * @param columnName the name of the column which to convert.
+     * @param target class.
+     * @param <T> the parameter for the intended type.
+     * @return the reader of the column.
+     * @throws IllegalArgumentException if there is no such column.
+     */
+    public <T> ColumnReader<T> reader(RowMetadata metadata, String columnName, Class<T> target) {
+        List<? extends ColumnMetadata> columns = metadata.getColumnMetadatas();
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getName().equalsIgnoreCase(columnName)) {
+                int index = i;
+                Class<?> javaType = columns.get(i).getJavaType();
+                if (javaType != null && target.isAssignableFrom(javaType)) {
+                    return row -> row.get(index, target);
+                }
+                return row -> convert(row.get(index), target);
+            }
         }
+        throw new IllegalArgumentException("Unknown column '" + columnName + "'");
     }
 }
@@ -0,0 +1,13 @@
+package com.ipa.gateway.repository.rowmapper;
+
+import io.r2dbc.spi.Row;
+
+/**
+ * Reads one column of a {@link Row} by position, converted to the expected type. Created by
+ * {@link ColumnConverter#reader} for a given {@link io.r2dbc.spi.RowMetadata}, and valid for all the rows sharing it.
+ * @param <T> the type of the value.
+ */
+@FunctionalInterface
+public interface ColumnReader<T> {
+    T read(Row row);
+}
@@ -1,18 +1,36 @@
 package com.ipa.gateway.repository.rowmapper;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.ipa.gateway.domain.User;
 import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import org.springframework.stereotype.Service;
 
 /**
  * Converter between {@link Row} to {@link User}, with proper type conversions.
+ * <p>
+ * The columns are resolved once per {@link RowMetadata}, which the driver shares between the rows of a result, and
+ * kept while the result is referenced, so that concurrent results do not resolve them again for each other's rows.
  */
 @Service
 public class UserRowMapper implements BiFunction<Row, String, User> {
 
     private final ColumnConverter converter;
 
+    /**
+     * Columns per prefix of each result, the metadata being compared by identity and weakly referenced.
+     */
+    private final Cache<RowMetadata, Map<String, Columns>> columnsByResult = Caffeine.newBuilder().weakKeys().build();
+
+    /**
+     * Columns of the result last mapped, read without a lookup by the following rows of the same result.
+     */
+    private volatile Resolved last;
+
     public UserRowMapper(ColumnConverter converter) {
         this.converter = converter;
     }
@@ -23,15 +41,53 @@ public class UserRowMapper implements BiFunction<Row, String, User> {
      */
     @Override
     public User apply(Row row, String prefix) {
+        Columns columns = getColumns(row.getMetadata(), prefix);
         User entity = new User();
-        entity.setId(row.get(prefix + "_id", String.class));
-        entity.setLogin(converter.fromRow(row, prefix + "_login", String.class));
-        entity.setFirstName(converter.fromRow(row, prefix + "_first_name", String.class));
-        entity.setLastName(converter.fromRow(row, prefix + "_last_name", String.class));
-        entity.setEmail(converter.fromRow(row, prefix + "_email", String.class));
-        entity.setActivated(Boolean.TRUE.equals(converter.fromRow(row, prefix + "_activated", Boolean.class)));
-        entity.setLangKey(converter.fromRow(row, prefix + "_lang_key", String.class));
-        entity.setImageUrl(converter.fromRow(row, prefix + "_image_url", String.class));
+        entity.setId(columns.id.read(row));
+        entity.setLogin(columns.login.read(row));
+        entity.setFirstName(columns.firstName.read(row));
+        entity.setLastName(columns.lastName.read(row));
+        entity.setEmail(columns.email.read(row));
+        entity.setActivated(Boolean.TRUE.equals(columns.activated.read(row)));
+        entity.setLangKey(columns.langKey.read(row));
+        entity.setImageUrl(columns.imageUrl.read(row));
         return entity;
     }
+
+    private Columns getColumns(RowMetadata metadata, String prefix) {
+        Resolved current = last;
+        if (current != null && current.metadata == metadata && current.prefix.equals(prefix)) {
+            return current.columns;
+        }
+        Columns columns = columnsByResult
+            .get(metadata, key -> new ConcurrentHashMap<>())
+            .computeIfAbsent(prefix, key -> new Columns(metadata, key));
+        last = new Resolved(metadata, prefix, columns);
+        return columns;
+    }
+
+    private record Resolved(RowMetadata metadata, String prefix, Columns columns) {}
+
+    private final class Columns {
+
+        private final ColumnReader<String> id;
+        private final ColumnReader<String> login;
+        private final ColumnReader<String> firstName;
+        private final ColumnReader<String> lastName;
+        private final ColumnReader<String> email;
+        private final ColumnReader<Boolean> activated;
+        private final ColumnReader<String> langKey;
+        private final ColumnReader<String> imageUrl;
+
+        private Columns(RowMetadata metadata, String prefix) {
+            this.id = converter.reader(metadata, prefix + "_id", String.class);
+            this.login = converter.reader(metadata, prefix + "_login", String.class);
+            this.firstName = converter.reader(metadata, prefix + "_first_name", String.class);
+            this.lastName = converter.reader(metadata, prefix + "_last_name", String.class);
+            this.email = converter.reader(metadata, prefix + "_email", String.class);
+            this.activated = converter.reader(metadata, prefix + "_activated", Boolean.class);
+            this.langKey = converter.reader(metadata, prefix + "_lang_key", String.class);
+            this.imageUrl = converter.reader(metadata, prefix + "_image_url", String.class);
+        }
+    }
 }
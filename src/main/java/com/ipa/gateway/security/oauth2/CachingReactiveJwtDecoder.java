@@ -0,0 +1,108 @@
+package com.ipa.gateway.security.oauth2;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+/**
+ * A {@link ReactiveJwtDecoder} which keeps the tokens decoded and validated by its delegate, so that a token reused
+ * across requests has its signature verified only once.
+ * <p>
+ * Entries are keyed by a SHA-256 digest of the token, and expire at the token {@code exp} claim, or after
+ * the given time to live if it comes first. Tokens without an expiry are never cached.
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+
+    private final Cache<String, Jwt> jwts;
+
+    private final Clock clock;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, long maximumSize, Duration timeToLive, MeterRegistry meterRegistry) {
+        this(delegate, maximumSize, timeToLive, meterRegistry, Clock.systemUTC());
+    }
+
+    CachingReactiveJwtDecoder(
+        ReactiveJwtDecoder delegate,
+        long maximumSize,
+        Duration timeToLive,
+        MeterRegistry meterRegistry,
+        Clock clock
+    ) {
+        this.delegate = delegate;
+        this.clock = clock;
+        this.jwts = Caffeine.newBuilder().maximumSize(maximumSize).expireAfter(new JwtExpiry(timeToLive, clock)).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, jwts, "jwtDecoder");
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        String key = digest(token);
+        Jwt cached = jwts.getIfPresent(key);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return delegate
+            .decode(token)
+            .doOnNext(jwt -> {
+                if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isAfter(clock.instant())) {
+                    jwts.put(key, jwt);
+                }
+            });
+    }
+
+    private static String digest(String token) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(messageDigest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class JwtExpiry implements Expiry<String, Jwt> {
+
+        private final Duration timeToLive;
+
+        private final Clock clock;
+
+        JwtExpiry(Duration timeToLive, Clock clock) {
+            this.timeToLive = timeToLive;
+            this.clock = clock;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            Instant expiresAt = jwt.getExpiresAt();
+            Duration untilExpiry = expiresAt == null ? Duration.ZERO : Duration.between(clock.instant(), expiresAt);
+            if (untilExpiry.isNegative()) {
+                return 0;
+            }
+            return (untilExpiry.compareTo(timeToLive) < 0 ? untilExpiry : timeToLive).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.ipa.gateway.security.oauth2;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Source of the JSON Web Keys used to verify access tokens, kept in memory.
+ * <p>
+ * The key set is fetched when {@link #start(Duration)} is called, then refreshed in the background, so that
+ * requests never wait for the IdP. A token signed with an unknown key id triggers an on-demand refresh, at most once
+ * per {@code minRefreshInterval}; concurrent refreshes share a single call, which fails after {@code timeout}.
+ */
+public class JwkSetCache implements Function<SignedJWT, Flux<JWK>> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JwkSetCache.class);
+
+    private final WebClient webClient;
+
+    private final String jwkSetUri;
+
+    private final long minRefreshIntervalNanos;
+
+    private final Duration timeout;
+
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+
+    private final AtomicReference<Mono<JWKSet>> inflight = new AtomicReference<>();
+
+    private volatile long lastRefreshNanos;
+
+    public JwkSetCache(WebClient webClient, String jwkSetUri, Duration minRefreshInterval, Duration timeout) {
+        this.webClient = webClient;
+        this.jwkSetUri = jwkSetUri;
+        this.minRefreshIntervalNanos = minRefreshInterval.toNanos();
+        this.timeout = timeout;
+        this.lastRefreshNanos = System.nanoTime() - minRefreshIntervalNanos;
+    }
+
+    /**
+     * Fetches the key set now, then every {@code refreshInterval}. Failures keep the previous keys.
+     *
+     * @param refreshInterval the time between two background refreshes.
+     * @return the background refresh, to dispose on shutdown.
+     */
+    public Disposable start(Duration refreshInterval) {
+        return Flux.interval(Duration.ZERO, refreshInterval)
+            // skip the ticks while a refresh is slow, rather than failing the interval when they overflow
+            .onBackpressureDrop()
+            .concatMap(tick ->
+                refresh()
+                    .onErrorResume(e -> {
+                        LOG.warn("Could not refresh the JWK set from {}: {}", jwkSetUri, e.getMessage());
+                        return Mono.empty();
+                    })
+            )
+            .subscribe();
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null) {
+            return Flux.empty();
+        }
+        JWKSelector selector = new JWKSelector(matcher);
+        List<JWK> keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()) {
+            return Flux.fromIterable(keys);
+        }
+        if (!jwkSet.get().getKeys().isEmpty() && System.nanoTime() - lastRefreshNanos < minRefreshIntervalNanos) {
+            LOG.debug("No JWK matching key id {}, refreshed too recently to fetch again", jwt.getHeader().getKeyID());
+            return Flux.empty();
+        }
+        LOG.debug("No JWK matching key id {}, refreshing the JWK set", jwt.getHeader().getKeyID());
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    /**
+     * Fetches the key set, or joins the fetch already in progress.
+     *
+     * @return the fetched key set.
+     */
+    public Mono<JWKSet> refresh() {
+        return Mono.defer(() -> {
+            Mono<JWKSet> current = inflight.get();
+            if (current != null) {
+                return current;
+            }
+            Mono<JWKSet> fetch = fetch().doFinally(signal -> inflight.set(null)).cache();
+            return inflight.compareAndSet(null, fetch) ? fetch : refresh();
+        });
+    }
+
+    private Mono<JWKSet> fetch() {
+        return webClient
+            .get()
+            .uri(jwkSetUri)
+            .retrieve()
+            .bodyToMono(String.class)
+            .timeout(timeout)
+            .<JWKSet>handle((body, sink) -> {
+                try {
+                    sink.next(JWKSet.parse(body));
+                } catch (ParseException e) {
+                    sink.error(new IllegalStateException("Invalid JWK set from " + jwkSetUri, e));
+                }
+            })
+            .doOnNext(keys -> {
+                LOG.debug("Fetched {} JWK(s) from {}", keys.getKeys().size(), jwkSetUri);
+                jwkSet.set(keys);
+                lastRefreshNanos = System.nanoTime();
+            });
+    }
+}
@@ -0,0 +1,120 @@
+package com.ipa.gateway.security.oauth2;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.ipa.gateway.config.ApplicationProperties;
+import io.netty.channel.ChannelOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * A {@link ReactiveJwtDecoder} completing the tokens of its delegate which miss the identity claims with the user info
+ * of the IdP, cached per subject.
+ * <p>
+ * The user info is cached as a future, so that concurrent requests for the same subject share a single IdP call, which
+ * is not cancelled when one of these requests is.
+ */
+public class UserInfoJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+
+    private final WebClient userInfoClient;
+
+    private final String userInfoUri;
+
+    private final AsyncCache<String, Map<String, Object>> users;
+
+    public UserInfoJwtDecoder(
+        ReactiveJwtDecoder delegate,
+        WebClient userInfoClient,
+        String userInfoUri,
+        AsyncCache<String, Map<String, Object>> users
+    ) {
+        this.delegate = delegate;
+        this.userInfoClient = userInfoClient;
+        this.userInfoUri = userInfoUri;
+        this.users = users;
+    }
+
+    /**
+     * Creates the client of the user info endpoint, on its own pool with connect and response timeouts, shared by all
+     * the lookups.
+     *
+     * @param webClientBuilder the builder of the application, cloned.
+     * @param userInfo the properties of the pool.
+     * @return the client.
+     */
+    public static WebClient createClient(WebClient.Builder webClientBuilder, ApplicationProperties.Security.UserInfo userInfo) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("oidc-userinfo")
+            .maxConnections(userInfo.getMaxConnections())
+            .pendingAcquireTimeout(userInfo.getPendingAcquireTimeout())
+            .maxIdleTime(userInfo.getMaxIdleTime())
+            .metrics(true)
+            .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) userInfo.getConnectTimeout().toMillis())
+            .responseTimeout(userInfo.getResponseTimeout());
+        return webClientBuilder.clone().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) throws JwtException {
+        return delegate.decode(token).flatMap(jwt -> enrich(token, jwt));
+    }
+
+    private Mono<Jwt> enrich(String token, Jwt jwt) {
+        // Only look up user information if identity claims are missing
+        if (jwt.hasClaim("given_name") && jwt.hasClaim("family_name")) {
+            return Mono.just(jwt);
+        }
+        // Get user info from `users` cache if present, or retrieve it from OAuth provider if not already loaded
+        CompletableFuture<Map<String, Object>> userInfo = users.get(jwt.getSubject(), (subject, executor) ->
+            fetchUserInfo(token).toFuture()
+        );
+        // Cancelling one request must not cancel the call shared with other requests
+        return Mono.fromFuture(userInfo, true).map(claims ->
+            Jwt.withTokenValue(jwt.getTokenValue())
+                .subject(jwt.getSubject())
+                .audience(jwt.getAudience())
+                .headers(headers -> headers.putAll(jwt.getHeaders()))
+                .claims(jwtClaims -> jwtClaims.putAll(claims))
+                .claims(jwtClaims -> jwtClaims.putAll(jwt.getClaims()))
+                .build()
+        );
+    }
+
+    private Mono<Map<String, Object>> fetchUserInfo(String token) {
+        return userInfoClient
+            .get()
+            .uri(userInfoUri)
+            .headers(headers -> headers.setBearerAuth(token))
+            .retrieve()
+            .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+            .map(userInfo -> {
+                String username = userInfo.get("preferred_username").toString();
+                // special handling for Auth0
+                if (userInfo.get("sub").toString().contains("|") && username.contains("@")) {
+                    userInfo.put("email", username);
+                }
+                // Allow full name in a name claim - happens with Auth0
+                if (userInfo.get("name") != null) {
+                    String[] name = userInfo.get("name").toString().split("\\s+");
+                    if (name.length > 0) {
+                        userInfo.put("given_name", name[0]);
+                        userInfo.put("family_name", String.join(" ", Arrays.copyOfRange(name, 1, name.length)));
+                    }
+                }
+                return Collections.unmodifiableMap(userInfo);
+            });
+    }
+}
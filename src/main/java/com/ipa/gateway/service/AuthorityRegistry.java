@@ -0,0 +1,107 @@
+package com.ipa.gateway.service;
+
+import com.ipa.gateway.domain.Authority;
+import com.ipa.gateway.repository.AuthorityRepository;
+import com.ipa.gateway.repository.DatabaseNotifications;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service class keeping the authorities in memory, as they are read on every user synchronization and rarely change.
+ * <p>
+ * The authorities are loaded at startup and reloaded on first use after {@link #invalidate()}. Changes made through
+ * {@link #changed()} are broadcast with a PostgreSQL notification, so that every instance reloads them.
+ */
+@Service
+public class AuthorityRegistry {
+
+    static final String CHANNEL = "jhi_authority_changed";
+
+    private static final Logger LOG = LoggerFactory.getLogger(AuthorityRegistry.class);
+
+    private final AuthorityRepository authorityRepository;
+
+    private final DatabaseNotifications databaseNotifications;
+
+    private final AtomicReference<Mono<List<Authority>>> authorities = new AtomicReference<>();
+
+    private Disposable listener;
+
+    public AuthorityRegistry(AuthorityRepository authorityRepository, DatabaseNotifications databaseNotifications) {
+        this.authorityRepository = authorityRepository;
+        this.databaseNotifications = databaseNotifications;
+        invalidate();
+    }
+
+    /**
+     * Listens to the changes made by other instances, which also loads the authorities once connected.
+     */
+    @PostConstruct
+    public void start() {
+        listener = databaseNotifications
+            .listen(CHANNEL)
+            .subscribe(payload -> {
+                LOG.debug("Authorities changed, reloading them");
+                invalidate();
+                getAuthorities().subscribe(loaded -> {}, e -> LOG.warn("Could not load the authorities: {}", e.getMessage()));
+            });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (listener != null) {
+            listener.dispose();
+        }
+    }
+
+    /**
+     * Gets all the authorities, sorted by name.
+     *
+     * @return the authorities.
+     */
+    public Mono<List<Authority>> getAuthorities() {
+        return Mono.defer(authorities::get);
+    }
+
+    /**
+     * Gets the names of all the authorities.
+     *
+     * @return the authority names.
+     */
+    public Flux<String> getAuthorityNames() {
+        return getAuthorities().flatMapIterable(list -> list).map(Authority::getName);
+    }
+
+    /**
+     * Discards the authorities kept in memory on this instance only.
+     */
+    public void invalidate() {
+        authorities.set(
+            authorityRepository
+                .findAll()
+                .sort(Comparator.comparing(Authority::getName))
+                .collectList()
+                .map(List::copyOf)
+                .cache(loaded -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO)
+        );
+    }
+
+    /**
+     * Discards the authorities kept in memory on every instance, to call after they are written.
+     *
+     * @return a completed {@link Mono}.
+     */
+    public Mono<Void> changed() {
+        return Mono.fromRunnable(this::invalidate).then(databaseNotifications.notify(CHANNEL, ""));
+    }
+}
@@ -0,0 +1,134 @@
+package com.ipa.gateway.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.repository.DatabaseNotifications;
+import com.ipa.gateway.service.dto.BookDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service class keeping the books looked up by id in memory.
+ * <p>
+ * Concurrent lookups of the same missing book share a single query, and books which do not exist are not cached.
+ * The hits and misses are published as the {@code cache.gets} metrics of the {@code book} cache.
+ * <p>
+ * The writes discard the local copy right away, and send a PostgreSQL notification delivered when their transaction
+ * commits. Every instance listens to it, this one included, so that a copy reloaded before the commit is dropped too.
+ */
+@Service
+public class BookCache {
+
+    static final String CHANNEL = "jhi_book_changed";
+
+    private static final Logger LOG = LoggerFactory.getLogger(BookCache.class);
+
+    private final DatabaseNotifications databaseNotifications;
+
+    private final boolean enabled;
+
+    private final boolean crossNodeInvalidation;
+
+    private final AsyncCache<Long, BookDTO> books;
+
+    private Disposable listener;
+
+    public BookCache(
+        DatabaseNotifications databaseNotifications,
+        ApplicationProperties applicationProperties,
+        MeterRegistry meterRegistry
+    ) {
+        this.databaseNotifications = databaseNotifications;
+        ApplicationProperties.EntityCache bookCache = applicationProperties.getBookCache();
+        this.enabled = bookCache.isEnabled();
+        this.crossNodeInvalidation = bookCache.isCrossNodeInvalidation();
+        this.books = Caffeine.newBuilder()
+            .maximumSize(bookCache.getMaximumSize())
+            .expireAfterWrite(bookCache.getTimeToLive())
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, books, "book");
+    }
+
+    /**
+     * Listens to the changes made by every instance.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled || !crossNodeInvalidation) {
+            return;
+        }
+        listener = databaseNotifications
+            .listen(CHANNEL)
+            .subscribe(payload -> {
+                LOG.debug("Books changed, discarding : {}", payload.isEmpty() ? "all" : payload);
+                discard(payload);
+            });
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (listener != null) {
+            listener.dispose();
+        }
+    }
+
+    /**
+     * Gets a book from memory, or loads it.
+     *
+     * @param id the id of the book.
+     * @param loader the query loading the book, which may be empty.
+     * @return the book, or empty if there is no such book.
+     */
+    public Mono<BookDTO> get(Long id, Function<Long, Mono<BookDTO>> loader) {
+        if (!enabled) {
+            return loader.apply(id);
+        }
+        // the load is shared by the concurrent lookups, so one of them cancelling must not cancel it
+        return Mono.fromFuture(() -> books.get(id, (key, executor) -> loader.apply(key).toFuture()), true);
+    }
+
+    /**
+     * Discards a book on every instance, to call after it is written.
+     *
+     * @param id the id of the book.
+     * @return a completed {@link Mono}.
+     */
+    public Mono<Void> evict(Long id) {
+        return changed(id.toString());
+    }
+
+    /**
+     * Discards all the books on every instance, to call after a bulk write.
+     *
+     * @return a completed {@link Mono}.
+     */
+    public Mono<Void> evictAll() {
+        return changed("");
+    }
+
+    private Mono<Void> changed(String payload) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        Mono<Void> discarded = Mono.fromRunnable(() -> discard(payload));
+        return crossNodeInvalidation ? discarded.then(databaseNotifications.notify(CHANNEL, payload)) : discarded;
+    }
+
+    private void discard(String payload) {
+        if (payload.isEmpty()) {
+            books.synchronous().invalidateAll();
+        } else {
+            books.synchronous().invalidate(Long.valueOf(payload));
+        }
+    }
+}
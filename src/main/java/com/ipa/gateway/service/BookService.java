@@ -1,6 +1,8 @@
 package com.ipa.gateway.service;
 
+import com.ipa.gateway.repository.Keyset;
 import com.ipa.gateway.service.dto.BookDTO;
+import com.ipa.gateway.service.dto.BulkItemResultDTO;
 import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -17,22 +19,56 @@ public interface BookService {
      */
     Mono<BookDTO> save(BookDTO bookDTO);
 
+    /**
+     * Save books in one transaction, with batched statements. Books which already have an ID are rejected.
+     *
+     * @param bookDTOs the entities to save.
+     * @return the result of each entity, in order.
+     */
+    Flux<BulkItemResultDTO> saveAll(Flux<BookDTO> bookDTOs);
+
+    /**
+     * Updates books in one transaction, with batched statements.
+     *
+     * @param bookDTOs the entities to update.
+     * @return the result of each entity, in order.
+     */
+    Flux<BulkItemResultDTO> updateAll(Flux<BookDTO> bookDTOs);
+
     /**
      * Updates a book.
      *
      * @param bookDTO the entity to update.
-     * @return the persisted entity.
+     * @return the persisted entity, or empty if there is no such book.
      */
     Mono<BookDTO> update(BookDTO bookDTO);
 
     /**
-     * Partially updates a book.
+     * Updates a book, only if it still has the expected content.
+     *
+     * @param bookDTO the entity to update.
+     * @param expected the entity as read by the caller.
+     * @return the persisted entity, or empty if there is no such book or it changed since it was read.
+     */
+    Mono<BookDTO> update(BookDTO bookDTO, BookDTO expected);
+
+    /**
+     * Partially updates a book, null fields are left unchanged.
      *
      * @param bookDTO the entity to update partially.
-     * @return the persisted entity.
+     * @return the persisted entity, or empty if there is no such book.
      */
     Mono<BookDTO> partialUpdate(BookDTO bookDTO);
 
+    /**
+     * Partially updates a book, only if it still has the expected content.
+     *
+     * @param bookDTO the entity to update partially.
+     * @param expected the entity as read by the caller.
+     * @return the persisted entity, or empty if there is no such book or it changed since it was read.
+     */
+    Mono<BookDTO> partialUpdate(BookDTO bookDTO, BookDTO expected);
+
     /**
      * Get all the books.
      *
@@ -41,6 +77,23 @@ public interface BookService {
      */
     Flux<BookDTO> findAll(Pageable pageable);
 
+    /**
+     * Get a keyset page of books. One more book than the page size is returned when another page follows,
+     * and the books are in the reverse order when paging backwards.
+     *
+     * @param keyset the keyset pagination information.
+     * @return the list of entities.
+     */
+    Flux<BookDTO> findAll(Keyset keyset);
+
+    /**
+     * Stream all the books ordered by id, fetched from the database in batches as the subscriber requests them.
+     *
+     * @param afterId the id after which to start, or null to start from the first book.
+     * @return the entities.
+     */
+    Flux<BookDTO> streamAll(Long afterId);
+
     /**
      * Returns the number of books available.
      * @return the number of entities in the database.
@@ -56,6 +109,14 @@ public interface BookService {
      */
     Mono<BookDTO> findOne(Long id);
 
+    /**
+     * Delete books in one transaction, with batched statements.
+     *
+     * @param ids the ids of the entities.
+     * @return the result of each entity, in order.
+     */
+    Flux<BulkItemResultDTO> deleteAll(Flux<Long> ids);
+
     /**
      * Delete the "id" book.
      *
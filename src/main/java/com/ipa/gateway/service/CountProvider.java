@@ -0,0 +1,103 @@
+package com.ipa.gateway.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.repository.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service class providing the total counts of paginated endpoints without scanning the table on every request.
+ * <p>
+ * Counts are kept in memory for a short time and invalidated when the entity is created or deleted on this instance.
+ * Tables the planner estimates above a threshold report the estimate instead of an exact count.
+ */
+@Service
+public class CountProvider {
+
+    /**
+     * Response header telling clients whether {@code X-Total-Count} is exact or estimated.
+     */
+    public static final String TOTAL_COUNT_EXACT_HEADER = "X-Total-Count-Exact";
+
+    private static final Logger LOG = LoggerFactory.getLogger(CountProvider.class);
+
+    private final EntityManager entityManager;
+
+    private final long estimateThreshold;
+
+    private final Cache<Class<?>, Count> counts;
+
+    public CountProvider(EntityManager entityManager, ApplicationProperties applicationProperties) {
+        this.entityManager = entityManager;
+        ApplicationProperties.Pagination pagination = applicationProperties.getPagination();
+        this.estimateThreshold = pagination.getCountEstimateThreshold();
+        this.counts = Caffeine.newBuilder().maximumSize(100).expireAfterWrite(pagination.getCountCacheTtl()).build();
+    }
+
+    /**
+     * Returns the total count of the given entity.
+     *
+     * @param entityType the entity type which holds the table name.
+     * @param exactCount the query returning the exact count, only subscribed when needed.
+     * @return the count.
+     */
+    public Mono<Count> count(Class<?> entityType, Mono<Long> exactCount) {
+        Count cached = counts.getIfPresent(entityType);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        Mono<Count> estimated = estimateThreshold > 0
+            ? entityManager
+                .estimateCount(entityType)
+                .filter(estimate -> estimate >= estimateThreshold)
+                .map(estimate -> new Count(estimate, false))
+            : Mono.empty();
+        return estimated
+            .switchIfEmpty(exactCount.map(count -> new Count(count, true)))
+            .doOnNext(count -> {
+                LOG.debug("Caching total count of {} : {}", entityType.getSimpleName(), count);
+                counts.put(entityType, count);
+            });
+    }
+
+    /**
+     * Discards the cached count of the given entity.
+     *
+     * @param entityType the entity type.
+     */
+    public void invalidate(Class<?> entityType) {
+        counts.invalidate(entityType);
+    }
+
+    /**
+     * A total count, and whether it is exact or estimated.
+     */
+    public static final class Count {
+
+        private final long value;
+
+        private final boolean exact;
+
+        public Count(long value, boolean exact) {
+            this.value = value;
+            this.exact = exact;
+        }
+
+        public long getValue() {
+            return value;
+        }
+
+        public boolean isExact() {
+            return exact;
+        }
+
+        @Override
+        public String toString() {
+            return "Count{value=" + value + ", exact=" + exact + "}";
+        }
+    }
+}
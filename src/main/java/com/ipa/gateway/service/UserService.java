@@ -1,5 +1,8 @@
 package com.ipa.gateway.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipa.gateway.config.ApplicationProperties;
 import com.ipa.gateway.config.Constants;
 import com.ipa.gateway.domain.Authority;
 import com.ipa.gateway.domain.User;
@@ -8,18 +11,27 @@ import com.ipa.gateway.repository.UserRepository;
 import com.ipa.gateway.security.SecurityUtils;
 import com.ipa.gateway.service.dto.AdminUserDTO;
 import com.ipa.gateway.service.dto.UserDTO;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.authentication.AbstractAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
 import org.springframework.security.oauth2.client.authentication.OAuth2AuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.DigestUtils;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
@@ -35,9 +47,54 @@ public class UserService {
 
     private final AuthorityRepository authorityRepository;
 
-    public UserService(UserRepository userRepository, AuthorityRepository authorityRepository) {
+    private final AuthorityRegistry authorityRegistry;
+
+    private final CountProvider countProvider;
+
+    private final TransactionalOperator transactionalOperator;
+
+    private final ApplicationProperties.UserSync userSync;
+
+    /**
+     * Fingerprint of the IdP claims last synchronized, or queued for synchronization, per login.
+     */
+    private final Cache<String, String> syncedUsers;
+
+    private final Queue<PendingSync> pendingSyncs = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pendingSyncCount = new AtomicInteger();
+
+    private final Disposable writeBehind;
+
+    public UserService(
+        UserRepository userRepository,
+        AuthorityRepository authorityRepository,
+        AuthorityRegistry authorityRegistry,
+        CountProvider countProvider,
+        TransactionalOperator transactionalOperator,
+        ApplicationProperties applicationProperties
+    ) {
         this.userRepository = userRepository;
         this.authorityRepository = authorityRepository;
+        this.authorityRegistry = authorityRegistry;
+        this.countProvider = countProvider;
+        this.transactionalOperator = transactionalOperator;
+        this.userSync = applicationProperties.getUserSync();
+        this.syncedUsers = Caffeine.newBuilder().maximumSize(userSync.getMaximumSize()).expireAfterWrite(userSync.getTimeToLive()).build();
+        this.writeBehind = userSync.isWriteBehind()
+            ? Flux.interval(userSync.getFlushInterval()).onBackpressureDrop().concatMap(tick -> flushPendingSyncs()).subscribe()
+            : null;
+    }
+
+    /**
+     * Stops the write-behind queue, synchronizing the users still pending.
+     */
+    @PreDestroy
+    public void stopWriteBehind() {
+        if (writeBehind != null) {
+            writeBehind.dispose();
+            flushPendingSyncs().block(userSync.getFlushInterval().plus(Duration.ofSeconds(10)));
+        }
     }
 
     /**
@@ -86,14 +143,14 @@ public class UserService {
                 // once https://github.com/spring-projects/spring-data-r2dbc/issues/215 is done
                 Mono<User> persistedUser;
                 if (forceCreate) {
-                    persistedUser = userRepository.create(user);
+                    persistedUser = userRepository.create(user).doOnSuccess(created -> countProvider.invalidate(User.class));
                 } else {
                     persistedUser = userRepository.save(user);
                 }
                 return persistedUser.flatMap(savedUser ->
-                    Flux.fromIterable(user.getAuthorities())
-                        .flatMap(authority -> userRepository.saveUserAuthority(savedUser.getId(), authority.getName()))
-                        .then(Mono.just(savedUser))
+                    userRepository
+                        .saveUserAuthorities(savedUser.getId(), user.getAuthorities().stream().map(Authority::getName).toList())
+                        .thenReturn(savedUser)
                 );
             });
     }
@@ -122,9 +179,8 @@ public class UserService {
      * Gets a list of all the authorities.
      * @return a list of all the authorities.
      */
-    @Transactional(readOnly = true)
     public Flux<String> getAuthorities() {
-        return authorityRepository.findAll().map(Authority::getName);
+        return authorityRegistry.getAuthorityNames();
     }
 
     private Mono<User> syncUserWithIdP(Map<String, Object> details, User user) {
@@ -133,21 +189,28 @@ public class UserService {
 
         return getAuthorities()
             .collectList()
-            .flatMapMany(dbAuthorities -> {
-                List<Authority> authoritiesToSave = userAuthorities
-                    .stream()
-                    .filter(authority -> !dbAuthorities.contains(authority))
-                    .map(authority -> {
-                        Authority authorityToSave = new Authority();
-                        authorityToSave.setName(authority);
-                        return authorityToSave;
-                    })
-                    .toList();
-                return Flux.fromIterable(authoritiesToSave);
+            .flatMap(dbAuthorities -> saveMissingAuthorities(userAuthorities, dbAuthorities))
+            .then(syncUserDetails(details, user));
+    }
+
+    private Mono<Void> saveMissingAuthorities(Collection<String> authorities, Collection<String> dbAuthorities) {
+        return Flux.fromIterable(authorities)
+            .filter(authority -> !dbAuthorities.contains(authority))
+            .distinct()
+            .map(authority -> {
+                Authority authorityToSave = new Authority();
+                authorityToSave.setName(authority);
+                return authorityToSave;
             })
             .doOnNext(authority -> LOG.debug("Saving authority '{}' in local database", authority))
-            .flatMap(authorityRepository::save)
-            .then(userRepository.findOneByLogin(user.getLogin()))
+            .concatMap(authorityRepository::save)
+            .hasElements()
+            .flatMap(saved -> saved ? authorityRegistry.changed() : Mono.empty());
+    }
+
+    private Mono<User> syncUserDetails(Map<String, Object> details, User user) {
+        return userRepository
+            .findOneByLogin(user.getLogin())
             .switchIfEmpty(saveUser(user, true))
             .flatMap(existingUser -> {
                 // if IdP sends last updated information, use it to determine if an update should happen
@@ -172,9 +235,56 @@ public class UserService {
             .thenReturn(user);
     }
 
+    /**
+     * Synchronizes a batch of queued users: authorities are loaded once for the whole batch, and only the latest
+     * claims of each login are written. The flush runs outside of the transactional proxy, so each user is written
+     * in its own transaction, for the user row and its authorities to be committed together.
+     */
+    private Mono<Void> flushPendingSyncs() {
+        return Mono.defer(() -> {
+            Map<String, PendingSync> batch = new LinkedHashMap<>();
+            PendingSync pending;
+            while (batch.size() < userSync.getBatchSize() && (pending = pendingSyncs.poll()) != null) {
+                pendingSyncCount.decrementAndGet();
+                batch.put(pending.user.getLogin(), pending);
+            }
+            if (batch.isEmpty()) {
+                return Mono.empty();
+            }
+            LOG.debug("Synchronizing {} user(s) with the local database", batch.size());
+            List<String> authorities = batch
+                .values()
+                .stream()
+                .flatMap(sync -> sync.user.getAuthorities().stream())
+                .map(Authority::getName)
+                .toList();
+            return getAuthorities()
+                .collectList()
+                .flatMap(dbAuthorities -> saveMissingAuthorities(authorities, dbAuthorities))
+                .thenMany(Flux.fromIterable(batch.values()))
+                .concatMap(sync ->
+                    transactionalOperator
+                        .transactional(syncUserDetails(sync.details, sync.user))
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(sync.authToken))
+                        .onErrorResume(e -> {
+                            LOG.warn("Could not synchronize user '{}': {}", sync.user.getLogin(), e.getMessage());
+                            syncedUsers.invalidate(sync.user.getLogin());
+                            return Mono.empty();
+                        })
+                )
+                .onErrorResume(e -> {
+                    LOG.warn("Could not synchronize {} user(s): {}", batch.size(), e.getMessage());
+                    syncedUsers.invalidateAll(batch.keySet());
+                    return Mono.empty();
+                })
+                .then(Mono.defer(() -> pendingSyncs.isEmpty() ? Mono.empty() : flushPendingSyncs()));
+        });
+    }
+
     /**
      * Returns the user from an OAuth 2.0 login or resource server with JWT.
-     * Synchronizes the user in the local repository.
+     * Synchronizes the user in the local repository, unless its claims did not change since the last
+     * synchronization. With write-behind enabled, the synchronization is queued and the user is returned at once.
      *
      * @param authToken the authentication token.
      * @return the user from the authentication.
@@ -203,7 +313,42 @@ public class UserService {
                 .collect(Collectors.toSet())
         );
 
-        return syncUserWithIdP(attributes, user).flatMap(u -> Mono.just(new AdminUserDTO(u)));
+        String login = user.getLogin();
+        String fingerprint = fingerprint(attributes, user);
+        if (fingerprint.equals(syncedUsers.getIfPresent(login))) {
+            return Mono.just(new AdminUserDTO(user));
+        }
+        syncedUsers.put(login, fingerprint);
+        if (writeBehind != null && pendingSyncCount.incrementAndGet() <= userSync.getMaxPending()) {
+            pendingSyncs.add(new PendingSync(attributes, user, authToken));
+            return Mono.just(new AdminUserDTO(user));
+        } else if (writeBehind != null) {
+            pendingSyncCount.decrementAndGet();
+            LOG.debug("Write-behind queue is full, synchronizing user '{}' inline", login);
+        }
+        return syncUserWithIdP(attributes, user)
+            .doOnError(e -> syncedUsers.invalidate(login))
+            .flatMap(u -> Mono.just(new AdminUserDTO(u)));
+    }
+
+    /**
+     * Digest of everything the synchronization writes, so that any change to the claims or roles forces a new one.
+     */
+    private static String fingerprint(Map<String, Object> details, User user) {
+        List<String> authorities = user.getAuthorities().stream().map(Authority::getName).sorted().toList();
+        String claims = String.join(
+            "\u0000",
+            String.valueOf(user.getId()),
+            String.valueOf(user.getFirstName()),
+            String.valueOf(user.getLastName()),
+            String.valueOf(user.getEmail()),
+            String.valueOf(user.getLangKey()),
+            String.valueOf(user.getImageUrl()),
+            String.valueOf(user.isActivated()),
+            String.valueOf(details.get("updated_at")),
+            String.join(",", authorities)
+        );
+        return DigestUtils.md5DigestAsHex(claims.getBytes(StandardCharsets.UTF_8));
     }
 
     private static User getUser(Map<String, Object> details) {
@@ -266,4 +411,19 @@ public class UserService {
         user.setActivated(activated);
         return user;
     }
+
+    private static final class PendingSync {
+
+        private final Map<String, Object> details;
+
+        private final User user;
+
+        private final AbstractAuthenticationToken authToken;
+
+        private PendingSync(Map<String, Object> details, User user, AbstractAuthenticationToken authToken) {
+            this.details = details;
+            this.user = user;
+            this.authToken = authToken;
+        }
+    }
 }
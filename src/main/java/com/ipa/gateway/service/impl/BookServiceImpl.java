@@ -1,16 +1,27 @@
 package com.ipa.gateway.service.impl;
 
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.domain.Book;
 import com.ipa.gateway.repository.BookRepository;
+import com.ipa.gateway.repository.Keyset;
+import com.ipa.gateway.service.BookCache;
 import com.ipa.gateway.service.BookService;
+import com.ipa.gateway.service.CountProvider;
 import com.ipa.gateway.service.dto.BookDTO;
+import com.ipa.gateway.service.dto.BulkItemResultDTO;
 import com.ipa.gateway.service.mapper.BookMapper;
+import java.util.Iterator;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
 /**
  * Service Implementation for managing {@link com.ipa.gateway.domain.Book}.
@@ -21,42 +32,150 @@ public class BookServiceImpl implements BookService {
 
     private static final Logger LOG = LoggerFactory.getLogger(BookServiceImpl.class);
 
+    /**
+     * Items of a bulk request written with one batch of statements.
+     */
+    private static final int BULK_BATCH_SIZE = 500;
+
     private final BookRepository bookRepository;
 
     private final BookMapper bookMapper;
 
-    public BookServiceImpl(BookRepository bookRepository, BookMapper bookMapper) {
+    private final CountProvider countProvider;
+
+    private final BookCache bookCache;
+
+    private final int exportFetchSize;
+
+    public BookServiceImpl(
+        BookRepository bookRepository,
+        BookMapper bookMapper,
+        CountProvider countProvider,
+        BookCache bookCache,
+        ApplicationProperties applicationProperties
+    ) {
         this.bookRepository = bookRepository;
         this.bookMapper = bookMapper;
+        this.countProvider = countProvider;
+        this.bookCache = bookCache;
+        this.exportFetchSize = applicationProperties.getExport().getFetchSize();
     }
 
     @Override
     public Mono<BookDTO> save(BookDTO bookDTO) {
         LOG.debug("Request to save Book : {}", bookDTO);
-        return bookRepository.save(bookMapper.toEntity(bookDTO)).map(bookMapper::toDto);
+        return bookRepository
+            .save(bookMapper.toEntity(bookDTO))
+            .flatMap(saved -> bookCache.evict(saved.getId()).thenReturn(saved))
+            .map(bookMapper::toDto)
+            .doOnSuccess(saved -> countProvider.invalidate(Book.class));
+    }
+
+    @Override
+    public Flux<BulkItemResultDTO> saveAll(Flux<BookDTO> bookDTOs) {
+        LOG.debug("Request to save Books in bulk");
+        return bookDTOs
+            .index()
+            .buffer(BULK_BATCH_SIZE)
+            .concatMap(items -> {
+                List<Book> books = items
+                    .stream()
+                    .filter(item -> item.getT2().getId() == null)
+                    .map(item -> bookMapper.toEntity(item.getT2()))
+                    .toList();
+                return bookRepository
+                    .insertAll(books)
+                    .collectList()
+                    .flatMapIterable(saved -> {
+                        Iterator<Book> savedBooks = saved.iterator();
+                        return items
+                            .stream()
+                            .map(item -> {
+                                Long id = item.getT2().getId();
+                                if (id != null) {
+                                    return BulkItemResultDTO.failure(item.getT1(), id, HttpStatus.BAD_REQUEST.value(), "idexists");
+                                }
+                                return BulkItemResultDTO.success(item.getT1(), savedBooks.next().getId(), HttpStatus.CREATED.value());
+                            })
+                            .toList();
+                    });
+            })
+            .doOnComplete(() -> countProvider.invalidate(Book.class));
+    }
+
+    @Override
+    public Flux<BulkItemResultDTO> updateAll(Flux<BookDTO> bookDTOs) {
+        LOG.debug("Request to update Books in bulk");
+        return bookDTOs
+            .index()
+            .buffer(BULK_BATCH_SIZE)
+            .concatMap(items -> {
+                List<Book> books = items
+                    .stream()
+                    .filter(item -> item.getT2().getId() != null)
+                    .map(item -> bookMapper.toEntity(item.getT2()))
+                    .toList();
+                return bookRepository
+                    .updateAll(books)
+                    .collectList()
+                    .flatMapIterable(updated -> {
+                        Iterator<Boolean> found = updated.iterator();
+                        return items
+                            .stream()
+                            .map(item -> {
+                                Long id = item.getT2().getId();
+                                if (id == null) {
+                                    return BulkItemResultDTO.failure(item.getT1(), null, HttpStatus.BAD_REQUEST.value(), "idnull");
+                                }
+                                return found.next()
+                                    ? BulkItemResultDTO.success(item.getT1(), id, HttpStatus.OK.value())
+                                    : BulkItemResultDTO.failure(item.getT1(), id, HttpStatus.NOT_FOUND.value(), "idnotfound");
+                            })
+                            .toList();
+                    });
+            })
+            .concatWith(bookCache.evictAll().then(Mono.empty()));
     }
 
     @Override
     public Mono<BookDTO> update(BookDTO bookDTO) {
+        return update(bookDTO, null);
+    }
+
+    @Override
+    public Mono<BookDTO> update(BookDTO bookDTO, BookDTO expected) {
         LOG.debug("Request to update Book : {}", bookDTO);
-        return bookRepository.save(bookMapper.toEntity(bookDTO)).map(bookMapper::toDto);
+        return evictOnWrite(bookDTO.getId(), bookRepository.update(bookMapper.toEntity(bookDTO), toEntityOrNull(expected)), expected);
     }
 
     @Override
     public Mono<BookDTO> partialUpdate(BookDTO bookDTO) {
-        LOG.debug("Request to partially update Book : {}", bookDTO);
+        return partialUpdate(bookDTO, null);
+    }
 
-        return bookRepository
-            .findById(bookDTO.getId())
-            .map(existingBook -> {
-                bookMapper.partialUpdate(existingBook, bookDTO);
+    @Override
+    public Mono<BookDTO> partialUpdate(BookDTO bookDTO, BookDTO expected) {
+        LOG.debug("Request to partially update Book : {}", bookDTO);
+        return evictOnWrite(
+            bookDTO.getId(),
+            bookRepository.partialUpdate(bookMapper.toEntity(bookDTO), toEntityOrNull(expected)),
+            expected
+        );
+    }
 
-                return existingBook;
-            })
-            .flatMap(bookRepository::save)
+    private Mono<BookDTO> evictOnWrite(Long id, Mono<Book> write, BookDTO expected) {
+        // a failed compare and set may come from a stale cached copy, which is dropped so that the client reads the current one
+        Mono<Book> failed = expected == null ? Mono.empty() : bookCache.evict(id).then(Mono.empty());
+        return write
+            .flatMap(updated -> bookCache.evict(updated.getId()).thenReturn(updated))
+            .switchIfEmpty(failed)
             .map(bookMapper::toDto);
     }
 
+    private Book toEntityOrNull(BookDTO bookDTO) {
+        return bookDTO == null ? null : bookMapper.toEntity(bookDTO);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Flux<BookDTO> findAll(Pageable pageable) {
@@ -64,20 +183,57 @@ public class BookServiceImpl implements BookService {
         return bookRepository.findAllBy(pageable).map(bookMapper::toDto);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<BookDTO> findAll(Keyset keyset) {
+        LOG.debug("Request to get a keyset page of Books");
+        return bookRepository.findAllBy(keyset).map(bookMapper::toDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Flux<BookDTO> streamAll(Long afterId) {
+        LOG.debug("Request to stream all Books after : {}", afterId);
+        return bookRepository.streamAll(afterId, exportFetchSize).map(bookMapper::toDto);
+    }
+
     public Mono<Long> countAll() {
         return bookRepository.count();
     }
 
     @Override
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public Mono<BookDTO> findOne(Long id) {
         LOG.debug("Request to get Book : {}", id);
-        return bookRepository.findById(id).map(bookMapper::toDto);
+        // no transaction is started, so that a book served from memory does not take a connection
+        return bookCache.get(id, key -> bookRepository.findById(key).map(bookMapper::toDto));
+    }
+
+    @Override
+    public Flux<BulkItemResultDTO> deleteAll(Flux<Long> ids) {
+        LOG.debug("Request to delete Books in bulk");
+        return ids
+            .index()
+            .buffer(BULK_BATCH_SIZE)
+            .concatMap(items ->
+                bookRepository
+                    .deleteAllByIdIn(items.stream().map(Tuple2::getT2).toList())
+                    .zipWithIterable(items, (deleted, item) ->
+                        deleted
+                            ? BulkItemResultDTO.success(item.getT1(), item.getT2(), HttpStatus.NO_CONTENT.value())
+                            : BulkItemResultDTO.failure(item.getT1(), item.getT2(), HttpStatus.NOT_FOUND.value(), "idnotfound")
+                    )
+            )
+            .concatWith(bookCache.evictAll().then(Mono.empty()))
+            .doOnComplete(() -> countProvider.invalidate(Book.class));
     }
 
     @Override
     public Mono<Void> delete(Long id) {
         LOG.debug("Request to delete Book : {}", id);
-        return bookRepository.deleteById(id);
+        return bookRepository
+            .deleteById(id)
+            .then(bookCache.evict(id))
+            .doOnSuccess(deleted -> countProvider.invalidate(Book.class));
     }
 }
@@ -0,0 +1,234 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Gateway filter limiting the requests in flight to a service, answering the requests beyond the limit with
+ * {@code 503 (Service Unavailable)} right away rather than letting them wait for a slow service.
+ * <p>
+ * Each service has a bulkhead, a fixed maximum, and below it an adaptive limit (additive increase, multiplicative
+ * decrease): the limit grows by one while the service answers in time and the limit is in use, and shrinks by the
+ * backoff ratio on an error, a {@code 429}, {@code 503} or {@code 504} response, or a response slower than the
+ * threshold. The latency runs until the response is committed, without the streaming of its body. A server-sent event
+ * stream releases its permit once committed and leaves the limit unchanged, since its lifetime is not a latency.
+ * Added to the discovered routes with {@code ConcurrencyLimit=serviceId}.
+ */
+@Component
+public class ConcurrencyLimitGatewayFilterFactory extends AbstractGatewayFilterFactory<ConcurrencyLimitGatewayFilterFactory.Config> {
+
+    static final String METRIC_PREFIX = "gateway.concurrency.";
+
+    private final ApplicationProperties.Gateway.ServiceLimits serviceLimits;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimitGatewayFilterFactory(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.serviceLimits = applicationProperties.getGateway().getServiceLimits();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("name");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        Limiter limiter = limiters.computeIfAbsent(config.getName().toLowerCase(Locale.ROOT), this::createLimiter);
+        return (exchange, chain) -> {
+            if (!limiter.tryAcquire()) {
+                exchange.getResponse().setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+                return exchange.getResponse().setComplete();
+            }
+            Permit permit = new Permit(limiter);
+            exchange
+                .getResponse()
+                .beforeCommit(() ->
+                    Mono.fromRunnable(() -> {
+                        if (isEventStream(exchange)) {
+                            permit.release();
+                        } else {
+                            permit.observe(isOverloaded(exchange.getResponse().getStatusCode()));
+                        }
+                    })
+                );
+            return chain
+                .filter(exchange)
+                .doFinally(signal -> {
+                    if (signal != SignalType.CANCEL) {
+                        permit.observe(signal == SignalType.ON_ERROR || isOverloaded(exchange.getResponse().getStatusCode()));
+                    }
+                    permit.release();
+                });
+        };
+    }
+
+    private static boolean isOverloaded(HttpStatusCode status) {
+        return (
+            status != null &&
+            (status.isSameCodeAs(HttpStatus.TOO_MANY_REQUESTS) ||
+                status.isSameCodeAs(HttpStatus.SERVICE_UNAVAILABLE) ||
+                status.isSameCodeAs(HttpStatus.GATEWAY_TIMEOUT))
+        );
+    }
+
+    private static boolean isEventStream(ServerWebExchange exchange) {
+        String contentType = exchange.getResponse().getHeaders().getFirst(HttpHeaders.CONTENT_TYPE);
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+    }
+
+    private Limiter createLimiter(String serviceId) {
+        Limiter limiter = new Limiter(
+            serviceLimits.getServices().getOrDefault(serviceId, serviceLimits.getDefaults()),
+            rejections(serviceId, "bulkhead"),
+            rejections(serviceId, "limit")
+        );
+        Gauge.builder(METRIC_PREFIX + "limit", limiter, Limiter::limit).tag("service", serviceId).register(meterRegistry);
+        Gauge.builder(METRIC_PREFIX + "in.flight", limiter, Limiter::inFlight).tag("service", serviceId).register(meterRegistry);
+        return limiter;
+    }
+
+    private Counter rejections(String serviceId, String reason) {
+        return Counter.builder(METRIC_PREFIX + "rejected").tag("service", serviceId).tag("reason", reason).register(meterRegistry);
+    }
+
+    /**
+     * Limit of the requests in flight to one service.
+     */
+    static final class Limiter {
+
+        private final ApplicationProperties.Gateway.Limits limits;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final Counter bulkheadRejections;
+
+        private final Counter limitRejections;
+
+        private volatile int limit;
+
+        Limiter(ApplicationProperties.Gateway.Limits limits, Counter bulkheadRejections, Counter limitRejections) {
+            this.limits = limits;
+            this.bulkheadRejections = bulkheadRejections;
+            this.limitRejections = limitRejections;
+            this.limit = limits.isAdaptive()
+                ? Math.max(limits.getMinLimit(), Math.min(limits.getInitialLimit(), limits.getMaxConcurrentCalls()))
+                : limits.getMaxConcurrentCalls();
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= limits.getMaxConcurrentCalls()) {
+                    bulkheadRejections.increment();
+                    return false;
+                }
+                if (current >= limit) {
+                    limitRejections.increment();
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * Adjusts the limit to the latency of a request, before its permit is released.
+         */
+        void adjust(long latencyNanos, boolean overloaded) {
+            if (!limits.isAdaptive()) {
+                return;
+            }
+            int inUse = inFlight.get();
+            synchronized (this) {
+                if (overloaded || latencyNanos > limits.getSlowCallThreshold().toNanos()) {
+                    limit = Math.max(limits.getMinLimit(), (int) (limit * limits.getBackoffRatio()));
+                } else if (inUse * 2 >= limit) {
+                    // only grows while the limit is in use, not while the traffic is low
+                    limit = Math.min(limits.getMaxConcurrentCalls(), limit + 1);
+                }
+            }
+        }
+
+        int limit() {
+            return limit;
+        }
+
+        int inFlight() {
+            return inFlight.get();
+        }
+    }
+
+    /**
+     * Permit of one request, observed once, when its response is committed or the request ends, and released once.
+     */
+    static final class Permit {
+
+        private final Limiter limiter;
+
+        private final long start = System.nanoTime();
+
+        private final AtomicBoolean observed = new AtomicBoolean();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit(Limiter limiter) {
+            this.limiter = limiter;
+        }
+
+        void observe(boolean overloaded) {
+            if (!released.get() && observed.compareAndSet(false, true)) {
+                limiter.adjust(System.nanoTime() - start, overloaded);
+            }
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                limiter.release();
+            }
+        }
+    }
+
+    public static class Config {
+
+        /**
+         * Id of the service, whose limits are shared by its routes.
+         */
+        private String name;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
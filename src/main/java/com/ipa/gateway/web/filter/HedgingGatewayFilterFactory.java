@@ -0,0 +1,322 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.netty.handler.timeout.ReadTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerUriTools;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientResponse;
+
+/**
+ * Gateway filter hedging the {@code GET} and {@code HEAD} requests of a discovered service: when the instance chosen
+ * by the load balancer has not answered after a delay, or has failed, the request is sent to another instance of the
+ * service too, and the first response is kept while the other request is cancelled.
+ * <p>
+ * The delay is the configured percentile of the time to the response headers observed for the service, and the hedged
+ * requests are bounded by a {@link RetryBudget} shared by all the services. The race is decided on the response
+ * headers, and the body of the winning response is streamed like by the routing filter, never buffered nor fetched
+ * again; the requests accepting server-sent events are not hedged. Each request is observed by the
+ * {@link InstanceStatisticsFilter} against the instance which received it. Added to the discovered routes with
+ * {@code Hedging}.
+ */
+@Component
+public class HedgingGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgingGatewayFilterFactory.Config> {
+
+    static final String METRIC_NAME = "gateway.hedge";
+
+    static final String LATENCY_METRIC_NAME = "gateway.hedge.latency";
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final ApplicationProperties.Gateway.Hedging properties;
+
+    private final ServiceRoutingFilter serviceRoutingFilter;
+
+    private final ReactiveDiscoveryClient discoveryClient;
+
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider;
+
+    private final InstanceStatisticsFilter statistics;
+
+    private final MeterRegistry meterRegistry;
+
+    private final RetryBudget retryBudget;
+
+    private final Map<String, Delay> delays = new ConcurrentHashMap<>();
+
+    public HedgingGatewayFilterFactory(
+        ApplicationProperties applicationProperties,
+        ServiceRoutingFilter serviceRoutingFilter,
+        ReactiveDiscoveryClient discoveryClient,
+        ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+        InstanceStatisticsFilter statistics,
+        MeterRegistry meterRegistry
+    ) {
+        super(Config.class);
+        this.properties = applicationProperties.getGateway().getHedging();
+        this.serviceRoutingFilter = serviceRoutingFilter;
+        this.discoveryClient = discoveryClient;
+        this.headersFiltersProvider = headersFiltersProvider;
+        this.statistics = statistics;
+        this.meterRegistry = meterRegistry;
+        this.retryBudget = new RetryBudget(properties.getRetryBudget(), System::nanoTime);
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // after the load balancer, which chooses the first instance
+        return new OrderedGatewayFilter(this::filter, ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 2);
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        URI url = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR);
+        Response<ServiceInstance> chosen = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        HttpMethod method = exchange.getRequest().getMethod();
+        if (
+            !properties.isEnabled() ||
+            route == null ||
+            url == null ||
+            chosen == null ||
+            !chosen.hasServer() ||
+            ServerWebExchangeUtils.isAlreadyRouted(exchange) ||
+            !(HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) ||
+            exchange.getRequest().getHeaders().getAccept().stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype)
+        ) {
+            return chain.filter(exchange);
+        }
+        ServiceInstance instance = chosen.getServer();
+        String serviceId = instance.getServiceId();
+        Delay delay = delays.computeIfAbsent(serviceId.toLowerCase(Locale.ROOT), this::createDelay);
+        HttpClient httpClient = serviceRoutingFilter.getHttpClient(route, exchange);
+        HttpHeaders headers = HttpHeadersFilter.filterRequest(headersFilters(), exchange);
+        InstanceStatisticsFilter.Observation observation = exchange.getAttribute(InstanceStatisticsFilter.OBSERVATION_ATTR);
+        if (observation == null) {
+            observation = statistics.of(instance).observe();
+        }
+        retryBudget.deposit();
+
+        AtomicBoolean decided = new AtomicBoolean();
+        AtomicReference<Throwable> primaryError = new AtomicReference<>();
+        Sinks.Empty<Void> primaryFailed = Sinks.empty();
+        Mono<Received> primary = send(httpClient, method, url, headers, delay, observation, decided, false).doOnError(e -> {
+            primaryError.set(e);
+            primaryFailed.tryEmitEmpty();
+        });
+        Mono<Received> hedged = Mono.firstWithSignal(Mono.delay(delay.get()).then(), primaryFailed.asMono())
+            .then(Mono.defer(() -> alternate(delay, instance)))
+            .flatMap(alternate ->
+                send(
+                    httpClient,
+                    method,
+                    LoadBalancerUriTools.reconstructURI(alternate, url),
+                    headers,
+                    delay,
+                    statistics.of(alternate).observe(),
+                    decided,
+                    true
+                )
+            );
+        return Mono.firstWithValue(primary, hedged)
+            // both failed, or the hedged request was not sent: the error of the first instance is the one to report
+            .onErrorMap(e -> primaryError.get() != null ? primaryError.get() : e)
+            // the response timeout of the pools, answered like in the ServiceRoutingFilter
+            .onErrorMap(ReadTimeoutException.class, e ->
+                new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Response took longer than the timeout of the service", e)
+            )
+            .flatMap(received -> {
+                route(exchange, received, delay);
+                return chain.filter(exchange);
+            });
+    }
+
+    /**
+     * @return another instance of the service, or nothing when there is none or the budget is spent.
+     */
+    private Mono<ServiceInstance> alternate(Delay delay, ServiceInstance chosen) {
+        return discoveryClient
+            .getInstances(chosen.getServiceId())
+            .filter(instance -> !(instance.getHost().equals(chosen.getHost()) && instance.getPort() == chosen.getPort()))
+            .collectList()
+            .flatMap(instances -> {
+                if (instances.isEmpty()) {
+                    return Mono.empty();
+                }
+                if (!retryBudget.tryWithdraw()) {
+                    meterRegistry.counter(METRIC_NAME, "service", delay.serviceId, "result", "denied").increment();
+                    return Mono.empty();
+                }
+                meterRegistry.counter(METRIC_NAME, "service", delay.serviceId, "result", "sent").increment();
+                return Mono.just(instances.get(ThreadLocalRandom.current().nextInt(instances.size())));
+            });
+    }
+
+    /**
+     * Sends the request to one instance, completing with its response as soon as the headers are received, the body
+     * being left on the connection. Only the first response is kept: a later one has lost the race, and its
+     * connection is closed. The request is observed against the instance which received it.
+     */
+    private Mono<Received> send(
+        HttpClient httpClient,
+        HttpMethod method,
+        URI url,
+        HttpHeaders headers,
+        Delay delay,
+        InstanceStatisticsFilter.Observation observation,
+        AtomicBoolean decided,
+        boolean hedged
+    ) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return httpClient
+                .headers(nettyHeaders -> {
+                    headers.forEach(nettyHeaders::add);
+                    nettyHeaders.remove(HttpHeaders.HOST);
+                })
+                .request(io.netty.handler.codec.http.HttpMethod.valueOf(method.name()))
+                .uri(url.toASCIIString())
+                .responseConnection((response, connection) -> {
+                    delay.record(System.nanoTime() - start);
+                    observation.complete(response.status().code() >= 500);
+                    if (!decided.compareAndSet(false, true)) {
+                        connection.dispose();
+                        return Mono.empty();
+                    }
+                    return Mono.just(new Received(response, connection, hedged));
+                })
+                // waits for the completion rather than cancelling after the response, which would close the connection
+                .singleOrEmpty()
+                .doOnError(e -> observation.complete(true))
+                .doOnCancel(observation::cancel);
+        });
+    }
+
+    /**
+     * Routes the exchange to the response kept, like the {@link ServiceRoutingFilter}: its status and headers are set,
+     * and its body is streamed from the connection by the {@code NettyWriteResponseFilter}.
+     */
+    private void route(ServerWebExchange exchange, Received received, Delay delay) {
+        if (received.hedged()) {
+            meterRegistry.counter(METRIC_NAME, "service", delay.serviceId, "result", "won").increment();
+        }
+        HttpClientResponse clientResponse = received.response();
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_ATTR, clientResponse);
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_CONN_ATTR, received.connection());
+        HttpHeaders headers = new HttpHeaders();
+        clientResponse.responseHeaders().forEach(header -> headers.add(header.getKey(), header.getValue()));
+        String contentType = headers.getFirst(HttpHeaders.CONTENT_TYPE);
+        if (StringUtils.hasLength(contentType)) {
+            exchange.getAttributes().put(ServerWebExchangeUtils.ORIGINAL_RESPONSE_CONTENT_TYPE_ATTR, contentType);
+        }
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatusCode.valueOf(clientResponse.status().code()));
+        HttpHeaders filtered = HttpHeadersFilter.filter(headersFilters(), headers, exchange, HttpHeadersFilter.Type.RESPONSE);
+        if (!filtered.containsKey(HttpHeaders.TRANSFER_ENCODING) && filtered.containsKey(HttpHeaders.CONTENT_LENGTH)) {
+            response.getHeaders().remove(HttpHeaders.TRANSFER_ENCODING);
+        }
+        exchange.getAttributes().put(ServerWebExchangeUtils.CLIENT_RESPONSE_HEADER_NAMES, filtered.keySet());
+        response.getHeaders().addAll(filtered);
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+    }
+
+    private List<HttpHeadersFilter> headersFilters() {
+        List<HttpHeadersFilter> headersFilters = headersFiltersProvider.getIfAvailable();
+        return headersFilters != null ? headersFilters : List.of();
+    }
+
+    private Delay createDelay(String serviceId) {
+        Timer.Builder latency = Timer.builder(LATENCY_METRIC_NAME).tag("service", serviceId);
+        if (properties.getPercentile() > 0) {
+            latency.publishPercentiles(properties.getPercentile());
+        }
+        return new Delay(serviceId, latency.register(meterRegistry));
+    }
+
+    /**
+     * Delay before hedging the requests of a service, the configured percentile of its latency, computed again at
+     * most once per second.
+     */
+    private final class Delay {
+
+        private final String serviceId;
+
+        private final Timer latency;
+
+        private volatile long nanos = properties.getDelay().toNanos();
+
+        private volatile long computed = System.nanoTime();
+
+        private Delay(String serviceId, Timer latency) {
+            this.serviceId = serviceId;
+            this.latency = latency;
+        }
+
+        Duration get() {
+            long now = System.nanoTime();
+            if (now - computed > SECOND) {
+                computed = now;
+                nanos = compute();
+            }
+            return Duration.ofNanos(nanos);
+        }
+
+        void record(long latencyNanos) {
+            latency.record(latencyNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private long compute() {
+            if (properties.getPercentile() > 0 && latency.count() >= properties.getMinSamples()) {
+                for (ValueAtPercentile value : latency.takeSnapshot().percentileValues()) {
+                    if (value.percentile() == properties.getPercentile()) {
+                        return Math.max(properties.getMinDelay().toNanos(), (long) value.value(TimeUnit.NANOSECONDS));
+                    }
+                }
+            }
+            return properties.getDelay().toNanos();
+        }
+    }
+
+    /**
+     * Response received from an instance, its body still to be read from the connection.
+     */
+    private record Received(HttpClientResponse response, Connection connection, boolean hedged) {}
+
+    public static class Config {}
+}
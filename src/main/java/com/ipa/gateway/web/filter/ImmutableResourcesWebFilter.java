@@ -0,0 +1,79 @@
+package com.ipa.gateway.web.filter;
+
+import java.time.Duration;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.resource.ResourceWebHandler;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Marks the static resources with a content hash in their name, such as {@code main.3f2a1c9e.js}, as {@code immutable}
+ * for a year: a new build gives them new names, so the browsers never need to revalidate them.
+ * <p>
+ * The other resources, such as {@code index.html} or the service worker, keep the headers of the
+ * {@link tech.jhipster.web.filter.reactive.CachingHttpHeadersFilter}.
+ */
+public class ImmutableResourcesWebFilter implements WebFilter {
+
+    private static final CacheControl IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable();
+
+    /**
+     * Shortest content hash in the names of the resources, see {@code webpack.prod.js}.
+     */
+    private static final int MIN_HASH_LENGTH = 8;
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        HttpMethod method = exchange.getRequest().getMethod();
+        if (
+            (HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method)) &&
+            isContentHashed(exchange.getRequest().getPath().pathWithinApplication().value())
+        ) {
+            exchange
+                .getResponse()
+                .beforeCommit(() -> {
+                    // only the resources served by the gateway itself, not the proxied ones
+                    if (exchange.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof ResourceWebHandler) {
+                        exchange.getResponse().getHeaders().setCacheControl(IMMUTABLE);
+                        exchange.getResponse().getHeaders().remove("Expires");
+                    }
+                    return Mono.empty();
+                });
+        }
+        return chain.filter(exchange);
+    }
+
+    /**
+     * @param path the path of the request.
+     * @return whether the file name holds a part made only of lower case hexadecimal digits, between two periods.
+     */
+    static boolean isContentHashed(String path) {
+        int start = path.lastIndexOf('/') + 1;
+        int part = path.indexOf('.', start);
+        while (part >= 0) {
+            int end = path.indexOf('.', part + 1);
+            if (end < 0) {
+                return false;
+            }
+            if (end - part - 1 >= MIN_HASH_LENGTH && isHexadecimal(path, part + 1, end)) {
+                return true;
+            }
+            part = end;
+        }
+        return false;
+    }
+
+    private static boolean isHexadecimal(String path, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = path.charAt(i);
+            if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
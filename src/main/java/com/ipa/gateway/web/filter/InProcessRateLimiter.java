@@ -0,0 +1,154 @@
+package com.ipa.gateway.web.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipa.gateway.config.ApplicationProperties;
+import jakarta.validation.constraints.Min;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.gateway.filter.ratelimit.AbstractRateLimiter;
+import org.springframework.cloud.gateway.support.ConfigurationService;
+import org.springframework.stereotype.Component;
+import org.springframework.validation.annotation.Validated;
+import reactor.core.publisher.Mono;
+
+/**
+ * Rate limiter keeping its token buckets in memory rather than in Redis, each bucket being a single
+ * {@link AtomicLong} updated without locks.
+ * <p>
+ * The bucket holds the time at which it is full again (generic cell rate algorithm): taking a token pushes that time
+ * by the interval between two tokens, as long as it stays within the burst capacity. The buckets are kept in a
+ * bounded cache, evicting the ones left idle. The limits apply per gateway instance.
+ * <p>
+ * The default limits come from {@code application.gateway.rate-limit}, and a route sets its own with the
+ * {@code in-process-rate-limiter.replenish-rate}, {@code .burst-capacity} and {@code .requested-tokens} arguments of its
+ * {@code RequestRateLimiter} filter.
+ */
+@Component
+public class InProcessRateLimiter extends AbstractRateLimiter<InProcessRateLimiter.Config> {
+
+    public static final String CONFIGURATION_PROPERTY_NAME = "in-process-rate-limiter";
+
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+
+    public static final String REPLENISH_RATE_HEADER = "X-RateLimit-Replenish-Rate";
+
+    public static final String BURST_CAPACITY_HEADER = "X-RateLimit-Burst-Capacity";
+
+    public static final String REQUESTED_TOKENS_HEADER = "X-RateLimit-Requested-Tokens";
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final Config defaultConfig;
+
+    private final LongSupplier nanoClock;
+
+    private final Cache<String, AtomicLong> buckets;
+
+    @Autowired
+    public InProcessRateLimiter(ApplicationProperties applicationProperties, ConfigurationService configurationService) {
+        this(applicationProperties, configurationService, System::nanoTime);
+    }
+
+    InProcessRateLimiter(ApplicationProperties applicationProperties, ConfigurationService configurationService, LongSupplier nanoClock) {
+        super(Config.class, CONFIGURATION_PROPERTY_NAME, configurationService);
+        ApplicationProperties.Gateway.RateLimit rateLimit = applicationProperties.getGateway().getRateLimit();
+        this.defaultConfig = new Config().setReplenishRate(rateLimit.getReplenishRate()).setBurstCapacity(rateLimit.getBurstCapacity());
+        this.nanoClock = nanoClock;
+        this.buckets = Caffeine.newBuilder()
+            .maximumSize(rateLimit.getMaximumBuckets())
+            .expireAfterAccess(rateLimit.getIdleTimeout())
+            .build();
+    }
+
+    @Override
+    public Mono<Response> isAllowed(String routeId, String id) {
+        Config config = getConfig().getOrDefault(routeId, defaultConfig);
+        long interval = SECOND / config.getReplenishRate();
+        AtomicLong bucket = buckets.get(routeId + ':' + id, key -> new AtomicLong(nanoClock.getAsLong()));
+        long capacity = config.getBurstCapacity() * interval;
+        long remaining = tryAcquire(bucket, nanoClock.getAsLong(), interval, capacity, config.getRequestedTokens());
+        return Mono.just(new Response(remaining >= 0, headers(config, Math.max(remaining, 0))));
+    }
+
+    /**
+     * Takes tokens from a bucket.
+     *
+     * @param bucket the time at which the bucket is full again.
+     * @param now the current time.
+     * @param interval the time between two tokens.
+     * @param capacity the time to refill the whole bucket.
+     * @param tokens the tokens to take.
+     * @return the tokens remaining in the bucket, or {@code -1} if it does not hold enough of them.
+     */
+    static long tryAcquire(AtomicLong bucket, long now, long interval, long capacity, long tokens) {
+        long cost = interval * tokens;
+        while (true) {
+            long full = bucket.get();
+            long next = (full - now < 0 ? now : full) + cost;
+            long used = next - now;
+            if (used > capacity) {
+                return -1;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return (capacity - used) / interval;
+            }
+        }
+    }
+
+    private static Map<String, String> headers(Config config, long remaining) {
+        return Map.of(
+            REMAINING_HEADER,
+            String.valueOf(remaining),
+            REPLENISH_RATE_HEADER,
+            String.valueOf(config.getReplenishRate()),
+            BURST_CAPACITY_HEADER,
+            String.valueOf(config.getBurstCapacity()),
+            REQUESTED_TOKENS_HEADER,
+            String.valueOf(config.getRequestedTokens())
+        );
+    }
+
+    @Validated
+    public static class Config {
+
+        @Min(1)
+        private int replenishRate;
+
+        @Min(0)
+        private long burstCapacity;
+
+        @Min(1)
+        private int requestedTokens = 1;
+
+        public int getReplenishRate() {
+            return replenishRate;
+        }
+
+        public Config setReplenishRate(int replenishRate) {
+            this.replenishRate = replenishRate;
+            return this;
+        }
+
+        public long getBurstCapacity() {
+            return burstCapacity;
+        }
+
+        public Config setBurstCapacity(long burstCapacity) {
+            this.burstCapacity = burstCapacity;
+            return this;
+        }
+
+        public int getRequestedTokens() {
+            return requestedTokens;
+        }
+
+        public Config setRequestedTokens(int requestedTokens) {
+            this.requestedTokens = requestedTokens;
+            return this;
+        }
+    }
+}
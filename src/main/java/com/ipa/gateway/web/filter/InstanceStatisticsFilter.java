@@ -0,0 +1,203 @@
+package com.ipa.gateway.web.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipa.gateway.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.GlobalFilter;
+import org.springframework.cloud.gateway.filter.ReactiveLoadBalancerClientFilter;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Global filter observing the requests sent to the instances chosen by the load balancer: their latency, the
+ * requests in flight, and the consecutive failures ejecting an instance for a while.
+ * <p>
+ * A request is observed until its response is committed, not until the end of its body, so that the server-sent events
+ * and the slow downloads do not count as latency. The statistics are read by the {@link LatencyAwareLoadBalancer}.
+ */
+@Component
+public class InstanceStatisticsFilter implements GlobalFilter, Ordered {
+
+    /**
+     * Attribute holding the {@link Observation} of the exchange, for the filters sending the request themselves.
+     */
+    static final String OBSERVATION_ATTR = InstanceStatisticsFilter.class.getName() + ".observation";
+
+    /**
+     * Latency of an instance which has not answered yet while requests are in flight, to try it with one request.
+     */
+    private static final double PENALTY = Duration.ofSeconds(1).toNanos();
+
+    private final ApplicationProperties.Gateway.LoadBalancer properties;
+
+    private final LongSupplier nanoClock;
+
+    private final Cache<String, InstanceStatistics> statistics = Caffeine.newBuilder().expireAfterAccess(Duration.ofHours(1)).build();
+
+    @Autowired
+    public InstanceStatisticsFilter(ApplicationProperties applicationProperties) {
+        this(applicationProperties, System::nanoTime);
+    }
+
+    InstanceStatisticsFilter(ApplicationProperties applicationProperties, LongSupplier nanoClock) {
+        this.properties = applicationProperties.getGateway().getLoadBalancer();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        Response<ServiceInstance> response = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR);
+        if (response == null || !response.hasServer()) {
+            return chain.filter(exchange);
+        }
+        Observation observation = of(response.getServer()).observe();
+        exchange.getAttributes().put(OBSERVATION_ATTR, observation);
+        exchange.getResponse().beforeCommit(() -> Mono.fromRunnable(() -> observation.complete(isServerError(exchange))));
+        return chain
+            .filter(exchange)
+            .doFinally(signal -> {
+                if (signal == SignalType.CANCEL) {
+                    observation.cancel();
+                } else {
+                    observation.complete(signal == SignalType.ON_ERROR || isServerError(exchange));
+                }
+            });
+    }
+
+    private static boolean isServerError(ServerWebExchange exchange) {
+        HttpStatusCode status = exchange.getResponse().getStatusCode();
+        return status != null && status.is5xxServerError();
+    }
+
+    @Override
+    public int getOrder() {
+        return ReactiveLoadBalancerClientFilter.LOAD_BALANCER_CLIENT_FILTER_ORDER + 1;
+    }
+
+    InstanceStatistics of(ServiceInstance instance) {
+        return statistics.get(instance.getServiceId() + '/' + instance.getHost() + ':' + instance.getPort(), key ->
+            new InstanceStatistics()
+        );
+    }
+
+    /**
+     * Statistics of an instance, the latency being a peak EWMA: it jumps to a higher observation, and otherwise decays
+     * towards the observations over the configured decay time.
+     */
+    final class InstanceStatistics {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private double latency;
+
+        private long updated;
+
+        private int failures;
+
+        private boolean ejected;
+
+        private long ejectedUntil;
+
+        long start() {
+            inFlight.incrementAndGet();
+            return nanoClock.getAsLong();
+        }
+
+        Observation observe() {
+            return new Observation(this, start());
+        }
+
+        void cancel() {
+            inFlight.decrementAndGet();
+        }
+
+        synchronized void complete(long start, boolean failure) {
+            inFlight.decrementAndGet();
+            long now = nanoClock.getAsLong();
+            long observed = now - start;
+            if (observed > latency || failure) {
+                // a failure may be fast, and must not make the instance look better
+                latency = Math.max(latency, observed);
+            } else {
+                double weight = weight(now);
+                latency = latency * weight + observed * (1 - weight);
+            }
+            updated = now;
+            if (!failure) {
+                failures = 0;
+            } else if (++failures >= properties.getFailureThreshold()) {
+                failures = 0;
+                ejected = true;
+                ejectedUntil = now + properties.getEjectionTime().toNanos();
+            }
+        }
+
+        int inFlight() {
+            return inFlight.get();
+        }
+
+        /**
+         * @return the latency in nanoseconds, decayed since the last observation so that an instance which was slow
+         * is tried again.
+         */
+        synchronized double latency() {
+            if (latency == 0 && inFlight.get() > 0) {
+                return PENALTY;
+            }
+            return latency * weight(nanoClock.getAsLong());
+        }
+
+        synchronized boolean isEjected() {
+            if (ejected && nanoClock.getAsLong() - ejectedUntil >= 0) {
+                ejected = false;
+            }
+            return ejected;
+        }
+
+        private double weight(long now) {
+            return Math.exp(-(double) (now - updated) / properties.getDecayTime().toNanos());
+        }
+    }
+
+    /**
+     * Request in flight to an instance, completed or cancelled once, by whichever comes first.
+     */
+    static final class Observation {
+
+        private final InstanceStatistics instance;
+
+        private final long start;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Observation(InstanceStatistics instance, long start) {
+            this.instance = instance;
+            this.start = start;
+        }
+
+        void complete(boolean failure) {
+            if (done.compareAndSet(false, true)) {
+                instance.complete(start, failure);
+            }
+        }
+
+        void cancel() {
+            if (done.compareAndSet(false, true)) {
+                instance.cancel();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * Load balancer choosing the better of two random instances of a service (power of two choices), from the statistics
+ * of the {@link InstanceStatisticsFilter}.
+ * <p>
+ * Comparing two random instances rather than taking the best one keeps the instances which just answered fast from
+ * being flooded. The ejected instances are skipped, unless all of them are ejected.
+ */
+public class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LatencyAwareLoadBalancer.class);
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider;
+
+    private final String serviceId;
+
+    private final InstanceStatisticsFilter statistics;
+
+    private final ApplicationProperties.Gateway.LoadBalancer.Strategy strategy;
+
+    public LatencyAwareLoadBalancer(
+        ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplierProvider,
+        String serviceId,
+        InstanceStatisticsFilter statistics,
+        ApplicationProperties.Gateway.LoadBalancer.Strategy strategy
+    ) {
+        this.serviceInstanceListSupplierProvider = serviceInstanceListSupplierProvider;
+        this.serviceId = serviceId;
+        this.statistics = statistics;
+        this.strategy = strategy;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplierProvider.getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier
+            .get(request)
+            .next()
+            .map(instances -> {
+                Response<ServiceInstance> response = choose(instances);
+                if (supplier instanceof SelectedInstanceCallback callback && response.hasServer()) {
+                    callback.selectedServiceInstance(response.getServer());
+                }
+                return response;
+            });
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        if (instances.isEmpty()) {
+            LOG.warn("No servers available for service: {}", serviceId);
+            return new EmptyResponse();
+        }
+        List<ServiceInstance> candidates = instances.stream().filter(instance -> !statistics.of(instance).isEjected()).toList();
+        if (candidates.isEmpty()) {
+            LOG.debug("All the instances of {} are ejected, choosing among them", serviceId);
+            candidates = instances;
+        }
+        if (candidates.size() == 1) {
+            return new DefaultResponse(candidates.get(0));
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return new DefaultResponse(load(a) <= load(b) ? a : b);
+    }
+
+    private double load(ServiceInstance instance) {
+        InstanceStatisticsFilter.InstanceStatistics instanceStatistics = statistics.of(instance);
+        int inFlight = instanceStatistics.inFlight();
+        if (strategy == ApplicationProperties.Gateway.LoadBalancer.Strategy.LEAST_IN_FLIGHT) {
+            return inFlight;
+        }
+        return instanceStatistics.latency() * (inFlight + 1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import java.net.InetSocketAddress;
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Key of the token bucket of a request, by user login, client IP or route, as configured in
+ * {@code application.gateway.rate-limit.key-by}.
+ * <p>
+ * It replaces the principal name key resolver of Spring Cloud Gateway, which denies the anonymous requests.
+ */
+@Component
+public class RateLimitKeyResolver implements KeyResolver {
+
+    private final ApplicationProperties.Gateway.RateLimit.KeyBy keyBy;
+
+    public RateLimitKeyResolver(ApplicationProperties applicationProperties) {
+        this.keyBy = applicationProperties.getGateway().getRateLimit().getKeyBy();
+    }
+
+    @Override
+    public Mono<String> resolve(ServerWebExchange exchange) {
+        return switch (keyBy) {
+            case USER -> exchange
+                .getPrincipal()
+                .map(principal -> "user:" + principal.getName())
+                .switchIfEmpty(Mono.fromSupplier(() -> clientIp(exchange)));
+            case IP -> Mono.fromSupplier(() -> clientIp(exchange));
+            case ROUTE -> Mono.just("route");
+        };
+    }
+
+    private static String clientIp(ServerWebExchange exchange) {
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null) {
+            return "ip:unknown";
+        }
+        return "ip:" + (remoteAddress.getAddress() != null ? remoteAddress.getAddress().getHostAddress() : remoteAddress.getHostString());
+    }
+}
@@ -0,0 +1,48 @@
+package com.ipa.gateway.web.filter;
+
+import org.springframework.cloud.gateway.filter.ratelimit.KeyResolver;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Applies the rate limiter of the discovered routes to {@code /api/**}, served by the gateway itself, answering with
+ * {@code 429 (Too Many Requests)} when the bucket of the request is empty.
+ */
+public class RateLimitWebFilter implements WebFilter {
+
+    /**
+     * Route id of the buckets, whose limits can be set like those of a route.
+     */
+    static final String ROUTE_ID = "api";
+
+    private final RateLimiter<?> rateLimiter;
+
+    private final KeyResolver keyResolver;
+
+    public RateLimitWebFilter(RateLimiter<?> rateLimiter, KeyResolver keyResolver) {
+        this.rateLimiter = rateLimiter;
+        this.keyResolver = keyResolver;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (!exchange.getRequest().getURI().getPath().startsWith("/api/")) {
+            return chain.filter(exchange);
+        }
+        return keyResolver
+            .resolve(exchange)
+            .flatMap(key -> rateLimiter.isAllowed(ROUTE_ID, key))
+            .flatMap(response -> {
+                exchange.getResponse().getHeaders().setAll(response.getHeaders());
+                if (response.isAllowed()) {
+                    return chain.filter(exchange);
+                }
+                exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+                return exchange.getResponse().setComplete();
+            });
+    }
+}
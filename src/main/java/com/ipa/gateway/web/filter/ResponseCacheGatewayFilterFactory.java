@@ -0,0 +1,386 @@
+package com.ipa.gateway.web.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.ipa.gateway.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Gateway filter caching the responses of proxied {@code GET} requests, as a shared cache following the
+ * {@code Cache-Control} and {@code Vary} headers of the services (RFC 9111).
+ * <p>
+ * Only the responses with an explicit {@code s-maxage} or {@code max-age} are stored, for at most the
+ * {@code maxTimeToLive} of the route. When the user is authenticated, they must also be {@code public} or carry
+ * {@code s-maxage}, so that the response of a user is never served to another one.
+ * <p>
+ * Concurrent misses on the same URI wait for the first one instead of all reaching the service. The entries of all
+ * the routes share one memory bound, and the lookups are counted by route and result in the
+ * {@code gateway.response.cache} metric.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    static final String METRIC_NAME = "gateway.response.cache";
+
+    private static final Set<Integer> CACHEABLE_STATUSES = Set.of(200, 203, 204, 300, 301, 404, 410);
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+        HttpHeaders.CONNECTION,
+        "Keep-Alive",
+        HttpHeaders.TRANSFER_ENCODING,
+        HttpHeaders.AGE
+    );
+
+    /**
+     * Weight of an entry besides its body, for the status, the headers and the key.
+     */
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final MeterRegistry meterRegistry;
+
+    private final int maxEntrySize;
+
+    private final boolean offHeap;
+
+    private final Cache<String, CachedResponse> responses;
+
+    private final Map<String, Sinks.One<CachedResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public ResponseCacheGatewayFilterFactory(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+        super(Config.class);
+        ApplicationProperties.Gateway.ResponseCache responseCache = applicationProperties.getGateway().getResponseCache();
+        this.meterRegistry = meterRegistry;
+        this.maxEntrySize = (int) Math.min(Integer.MAX_VALUE - ENTRY_OVERHEAD, responseCache.getMaxEntrySize().toBytes());
+        this.offHeap = responseCache.isOffHeap();
+        this.responses = Caffeine.newBuilder()
+            .maximumWeight(responseCache.getMaximumSize().toBytes())
+            .weigher((String key, CachedResponse response) -> ENTRY_OVERHEAD + response.size())
+            .expireAfter(new ResponseExpiry())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "gatewayResponses");
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("maxTimeToLive");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        // runs before the response is written, so that the body written to the client can be stored
+        return new OrderedGatewayFilter(
+            (exchange, chain) -> filter(exchange, chain, config),
+            NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1
+        );
+    }
+
+    private Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain, Config config) {
+        ServerHttpRequest request = exchange.getRequest();
+        String routeId = routeId(exchange);
+        Map<String, String> requestDirectives = directives(request.getHeaders());
+        if (!HttpMethod.GET.equals(request.getMethod()) || requestDirectives.containsKey("no-store")) {
+            count(routeId, "bypass");
+            return chain.filter(exchange);
+        }
+        String key = routeId + ' ' + request.getURI();
+        boolean revalidate = requestDirectives.containsKey("no-cache") || "0".equals(requestDirectives.get("max-age"));
+        if (revalidate) {
+            return fetch(exchange, chain, config, routeId, key, null);
+        }
+        CachedResponse cached = responses.getIfPresent(key);
+        if (cached != null && cached.matches(request)) {
+            count(routeId, "hit");
+            return cached.writeTo(exchange.getResponse());
+        }
+        Sinks.One<CachedResponse> sink = Sinks.one();
+        Sinks.One<CachedResponse> leader = inFlight.putIfAbsent(key, sink);
+        if (leader == null) {
+            return fetch(exchange, chain, config, routeId, key, sink);
+        }
+        return leader
+            .asMono()
+            .filter(response -> response.matches(request))
+            .map(response -> {
+                count(routeId, "hit");
+                return response.writeTo(exchange.getResponse());
+            })
+            .defaultIfEmpty(
+                Mono.defer(() -> {
+                    count(routeId, "miss");
+                    return chain.filter(exchange);
+                })
+            )
+            .flatMap(write -> write);
+    }
+
+    private Mono<Void> fetch(
+        ServerWebExchange exchange,
+        GatewayFilterChain chain,
+        Config config,
+        String routeId,
+        String key,
+        Sinks.One<CachedResponse> sink
+    ) {
+        count(routeId, "miss");
+        ServerHttpRequest request = exchange.getRequest();
+        Mono<Boolean> authenticated = request.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)
+            ? Mono.just(true)
+            : exchange.getPrincipal().hasElement();
+        return authenticated
+            .flatMap(isAuthenticated -> {
+                CachingResponse response = new CachingResponse(exchange.getResponse());
+                return chain
+                    .filter(exchange.mutate().response(response).build())
+                    .doOnSuccess(done -> {
+                        CachedResponse cached = response.toCachedResponse(request, isAuthenticated, config.getMaxTimeToLive());
+                        if (cached != null) {
+                            responses.put(key, cached);
+                            if (sink != null) {
+                                sink.tryEmitValue(cached);
+                            }
+                        }
+                    });
+            })
+            .doFinally(signal -> {
+                if (sink != null) {
+                    sink.tryEmitEmpty();
+                    inFlight.remove(key, sink);
+                }
+            });
+    }
+
+    private void count(String routeId, String result) {
+        meterRegistry.counter(METRIC_NAME, "route", routeId, "result", result).increment();
+    }
+
+    private static String routeId(ServerWebExchange exchange) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        return route == null ? "unknown" : route.getId();
+    }
+
+    private static Map<String, String> directives(HttpHeaders headers) {
+        List<String> values = headers.get(HttpHeaders.CACHE_CONTROL);
+        if (values == null) {
+            return Map.of();
+        }
+        Map<String, String> directives = new HashMap<>();
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                int equals = directive.indexOf('=');
+                String name = (equals < 0 ? directive : directive.substring(0, equals)).trim().toLowerCase(Locale.ROOT);
+                String argument = equals < 0 ? "" : directive.substring(equals + 1).trim().replace("\"", "");
+                if (!name.isEmpty()) {
+                    directives.put(name, argument);
+                }
+            }
+        }
+        return directives;
+    }
+
+    private static Duration seconds(String value) {
+        try {
+            return value == null ? null : Duration.ofSeconds(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public static class Config {
+
+        /**
+         * Upper bound of the freshness lifetime given by the service.
+         */
+        private Duration maxTimeToLive = Duration.ofMinutes(10);
+
+        public Duration getMaxTimeToLive() {
+            return maxTimeToLive;
+        }
+
+        public void setMaxTimeToLive(Duration maxTimeToLive) {
+            this.maxTimeToLive = maxTimeToLive;
+        }
+    }
+
+    /**
+     * Response which keeps a copy of the body written to the client, as long as it fits in an entry.
+     */
+    private final class CachingResponse extends ServerHttpResponseDecorator {
+
+        private ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        private CachingResponse(ServerHttpResponse delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+            return super.writeWith(Flux.from(body).doOnNext(this::copy));
+        }
+
+        @Override
+        public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+            // streamed responses are not cached
+            this.body = null;
+            return super.writeAndFlushWith(body);
+        }
+
+        private void copy(DataBuffer buffer) {
+            if (body == null) {
+                return;
+            }
+            int length = buffer.readableByteCount();
+            if (body.size() + length > maxEntrySize) {
+                body = null;
+                return;
+            }
+            byte[] bytes = new byte[length];
+            int position = buffer.readPosition();
+            buffer.read(bytes);
+            buffer.readPosition(position);
+            body.writeBytes(bytes);
+        }
+
+        private CachedResponse toCachedResponse(ServerHttpRequest request, boolean authenticated, Duration maxTimeToLive) {
+            HttpStatusCode status = getStatusCode();
+            HttpHeaders headers = getHeaders();
+            if (body == null || status == null || !CACHEABLE_STATUSES.contains(status.value())) {
+                return null;
+            }
+            Map<String, String> directives = directives(headers);
+            if (
+                directives.containsKey("no-store") ||
+                directives.containsKey("no-cache") ||
+                directives.containsKey("private") ||
+                headers.containsKey(HttpHeaders.SET_COOKIE)
+            ) {
+                return null;
+            }
+            if (authenticated && !directives.containsKey("public") && !directives.containsKey("s-maxage")) {
+                return null;
+            }
+            Duration timeToLive = seconds(directives.containsKey("s-maxage") ? directives.get("s-maxage") : directives.get("max-age"));
+            if (timeToLive == null || timeToLive.isNegative() || timeToLive.isZero()) {
+                return null;
+            }
+            Map<String, List<String>> varyValues = new LinkedHashMap<>();
+            for (String name : headers.getVary()) {
+                if (name.equals("*")) {
+                    return null;
+                }
+                varyValues.put(name, request.getHeaders().get(name));
+            }
+            HttpHeaders stored = new HttpHeaders();
+            headers.forEach((name, values) -> {
+                if (HOP_BY_HOP_HEADERS.stream().noneMatch(name::equalsIgnoreCase)) {
+                    stored.put(name, List.copyOf(values));
+                }
+            });
+            byte[] bytes = body.toByteArray();
+            ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(bytes.length).put(bytes).flip() : ByteBuffer.wrap(bytes);
+            return new CachedResponse(
+                status,
+                HttpHeaders.readOnlyHttpHeaders(stored),
+                buffer.asReadOnlyBuffer(),
+                varyValues,
+                timeToLive.compareTo(maxTimeToLive) < 0 ? timeToLive : maxTimeToLive
+            );
+        }
+    }
+
+    private static final class CachedResponse {
+
+        private final HttpStatusCode status;
+
+        private final HttpHeaders headers;
+
+        private final ByteBuffer body;
+
+        private final Map<String, List<String>> varyValues;
+
+        private final Duration timeToLive;
+
+        private final long storedAt = System.nanoTime();
+
+        private CachedResponse(
+            HttpStatusCode status,
+            HttpHeaders headers,
+            ByteBuffer body,
+            Map<String, List<String>> varyValues,
+            Duration timeToLive
+        ) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.varyValues = varyValues;
+            this.timeToLive = timeToLive;
+        }
+
+        private int size() {
+            return body.capacity();
+        }
+
+        private boolean matches(ServerHttpRequest request) {
+            HttpHeaders requestHeaders = request.getHeaders();
+            return varyValues.entrySet().stream().allMatch(vary -> Objects.equals(vary.getValue(), requestHeaders.get(vary.getKey())));
+        }
+
+        private Mono<Void> writeTo(ServerHttpResponse response) {
+            response.setStatusCode(status);
+            response.getHeaders().putAll(headers);
+            response.getHeaders().set(HttpHeaders.AGE, Long.toString(Duration.ofNanos(System.nanoTime() - storedAt).toSeconds()));
+            return response.writeWith(Mono.fromSupplier(() -> response.bufferFactory().wrap(body.duplicate())));
+        }
+    }
+
+    private static final class ResponseExpiry implements Expiry<String, CachedResponse> {
+
+        @Override
+        public long expireAfterCreate(String key, CachedResponse response, long currentTime) {
+            return response.timeToLive.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, response, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, CachedResponse response, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Budget of the retries over a sliding window: a retry is allowed while the retries of the window stay below a ratio
+ * of the requests of the window, plus a minimum per second.
+ * <p>
+ * The window is made of one slot per second, counting without locks; a slot is only locked when it is reused for a
+ * new second. The counts are approximate when a slot is reused while it is updated.
+ */
+final class RetryBudget {
+
+    private static final long SECOND = Duration.ofSeconds(1).toNanos();
+
+    private final double ratio;
+
+    private final long minRetries;
+
+    private final Slot[] slots;
+
+    private final LongSupplier nanoClock;
+
+    RetryBudget(ApplicationProperties.Gateway.Hedging.RetryBudget properties, LongSupplier nanoClock) {
+        this.ratio = properties.getRatio();
+        this.slots = new Slot[(int) Math.max(1, properties.getWindow().toSeconds())];
+        this.minRetries = properties.getMinRetriesPerSecond() * slots.length;
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    /**
+     * Records a request, which may be retried.
+     */
+    void deposit() {
+        slot(second()).requests.increment();
+    }
+
+    /**
+     * Records a retry if the budget allows it.
+     *
+     * @return whether the retry is allowed.
+     */
+    boolean tryWithdraw() {
+        long second = second();
+        long requests = 0;
+        long retries = 0;
+        for (Slot slot : slots) {
+            if (slot.second > second - slots.length) {
+                requests += slot.requests.sum();
+                retries += slot.retries.sum();
+            }
+        }
+        if (retries >= minRetries + (long) (ratio * requests)) {
+            return false;
+        }
+        slot(second).retries.increment();
+        return true;
+    }
+
+    private long second() {
+        return Math.floorDiv(nanoClock.getAsLong(), SECOND);
+    }
+
+    private Slot slot(long second) {
+        Slot slot = slots[(int) Math.floorMod(second, slots.length)];
+        if (slot.second != second) {
+            synchronized (slot) {
+                if (slot.second != second) {
+                    slot.requests.reset();
+                    slot.retries.reset();
+                    slot.second = second;
+                }
+            }
+        }
+        return slot;
+    }
+
+    private static final class Slot {
+
+        private final LongAdder requests = new LongAdder();
+
+        private final LongAdder retries = new LongAdder();
+
+        private volatile long second = Long.MIN_VALUE;
+    }
+}
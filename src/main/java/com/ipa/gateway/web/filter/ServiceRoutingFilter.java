@@ -0,0 +1,149 @@
+package com.ipa.gateway.web.filter;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import jakarta.annotation.PreDestroy;
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientFactory;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.cloud.gateway.filter.NettyRoutingFilter;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * Routing filter sending the requests of each discovered service through its own connection pool, so that a slow
+ * service cannot take the connections of the others.
+ * <p>
+ * It replaces the {@link NettyRoutingFilter} of Spring Cloud Gateway, which is disabled in {@code application.yml}.
+ * The clients of the services are built like the shared client, with the {@code spring.cloud.gateway.httpclient}
+ * properties and the {@link HttpClientCustomizer} beans, only their pool and timeouts coming from
+ * {@code application.gateway.service-pools}; the {@code connect-timeout} metadata of a route still applies. The routes
+ * which are not load balanced to a service keep the shared client. Each pool publishes the reactor-netty
+ * connection provider metrics, {@code reactor.netty.connection.provider.active.connections}, {@code .idle.connections}
+ * and {@code .pending.connections}, tagged with the name {@code gateway.<serviceId>}.
+ */
+@Component
+public class ServiceRoutingFilter extends NettyRoutingFilter {
+
+    static final String POOL_NAME_PREFIX = "gateway.";
+
+    private final HttpClientProperties properties;
+
+    private final ServerProperties serverProperties;
+
+    private final HttpClientSslConfigurer sslConfigurer;
+
+    private final List<HttpClientCustomizer> customizers;
+
+    private final ApplicationProperties.Gateway.ServicePools servicePools;
+
+    private final Map<String, ConnectionProvider> connectionProviders = new ConcurrentHashMap<>();
+
+    private final Map<String, HttpClient> httpClients = new ConcurrentHashMap<>();
+
+    public ServiceRoutingFilter(
+        HttpClient httpClient,
+        ObjectProvider<List<HttpHeadersFilter>> headersFiltersProvider,
+        HttpClientProperties properties,
+        ServerProperties serverProperties,
+        HttpClientSslConfigurer sslConfigurer,
+        ObjectProvider<HttpClientCustomizer> customizers,
+        ApplicationProperties applicationProperties
+    ) {
+        super(httpClient, headersFiltersProvider, properties);
+        this.properties = properties;
+        this.serverProperties = serverProperties;
+        this.sslConfigurer = sslConfigurer;
+        this.customizers = customizers.orderedStream().toList();
+        this.servicePools = applicationProperties.getGateway().getServicePools();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, GatewayFilterChain chain) {
+        // the response timeout of the pools fails with a read timeout, answered like the gateway's own timeouts
+        return super
+            .filter(exchange, chain)
+            .onErrorMap(ReadTimeoutException.class, e ->
+                new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Response took longer than the timeout of the service", e)
+            );
+    }
+
+    @Override
+    protected HttpClient getHttpClient(Route route, ServerWebExchange exchange) {
+        URI uri = route.getUri();
+        if (!"lb".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+            return super.getHttpClient(route, exchange);
+        }
+        HttpClient httpClient = httpClients.computeIfAbsent(uri.getHost().toLowerCase(Locale.ROOT), this::createHttpClient);
+        Object connectTimeout = route.getMetadata().get(RouteMetadataUtils.CONNECT_TIMEOUT_ATTR);
+        if (connectTimeout != null) {
+            int millis = connectTimeout instanceof Number number ? number.intValue() : Integer.parseInt(connectTimeout.toString());
+            return httpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, millis);
+        }
+        return httpClient;
+    }
+
+    private HttpClient createHttpClient(String serviceId) {
+        ApplicationProperties.Gateway.Pool pool = servicePools.getServices().getOrDefault(serviceId, servicePools.getDefaults());
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(POOL_NAME_PREFIX + serviceId)
+            .maxConnections(pool.getMaxConnections())
+            .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+            .maxIdleTime(pool.getMaxIdleTime())
+            .maxLifeTime(pool.getMaxLifeTime())
+            .evictInBackground(pool.getEvictionInterval())
+            .metrics(true)
+            .build();
+        connectionProviders.put(serviceId, connectionProvider);
+        return new ServiceHttpClientFactory(connectionProvider)
+            .createHttpClient()
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, Math.toIntExact(pool.getConnectTimeout().toMillis()))
+            .responseTimeout(pool.getResponseTimeout());
+    }
+
+    @PreDestroy
+    public void dispose() {
+        connectionProviders.values().forEach(ConnectionProvider::dispose);
+    }
+
+    /**
+     * Factory of the shared client of Spring Cloud Gateway (decoder limits, HTTP/2, proxy, SSL, compression, wiretap and
+     * customizers), building a client on the pool of a service instead of the shared pool.
+     */
+    private final class ServiceHttpClientFactory extends HttpClientFactory {
+
+        private final ConnectionProvider connectionProvider;
+
+        private ServiceHttpClientFactory(ConnectionProvider connectionProvider) {
+            super(properties, serverProperties, sslConfigurer, customizers);
+            this.connectionProvider = connectionProvider;
+        }
+
+        @Override
+        protected ConnectionProvider buildConnectionProvider(HttpClientProperties properties) {
+            return connectionProvider;
+        }
+
+        HttpClient createHttpClient() {
+            return createInstance();
+        }
+    }
+}
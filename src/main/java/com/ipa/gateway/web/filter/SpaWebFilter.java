@@ -1,5 +1,9 @@
 package com.ipa.gateway.web.filter;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.server.ServerWebExchange;
 import org.springframework.web.server.WebFilter;
 import org.springframework.web.server.WebFilterChain;
@@ -7,24 +11,108 @@ import reactor.core.publisher.Mono;
 
 public class SpaWebFilter implements WebFilter {
 
+    /**
+     * Prefixes of the paths served by the server rather than by the client.
+     */
+    public static final List<String> SERVER_PREFIXES = List.of("/api", "/management", "/v3/api-docs", "/login", "/oauth2", "/services");
+
+    private static final Consumer<ServerHttpRequest.Builder> FORWARD_TO_INDEX = request -> request.path("/index.html");
+
+    private final PrefixTrie serverPrefixes;
+
+    public SpaWebFilter() {
+        this(SERVER_PREFIXES);
+    }
+
+    public SpaWebFilter(List<String> serverPrefixes) {
+        this.serverPrefixes = new PrefixTrie(serverPrefixes);
+    }
+
     /**
      * Forwards any unmapped paths (except those containing a period) to the client {@code index.html}.
      */
     @Override
     public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
-        String path = exchange.getRequest().getURI().getPath();
-        if (
-            !path.startsWith("/api") &&
-            !path.startsWith("/management") &&
-            !path.startsWith("/v3/api-docs") &&
-            !path.startsWith("/login") &&
-            !path.startsWith("/oauth2") &&
-            !path.startsWith("/services") &&
-            !path.contains(".") &&
-            path.matches("/(.*)")
-        ) {
-            return chain.filter(exchange.mutate().request(exchange.getRequest().mutate().path("/index.html").build()).build());
+        if (forwardsToIndex(exchange.getRequest().getURI().getPath())) {
+            return chain.filter(exchange.mutate().request(FORWARD_TO_INDEX).build());
         }
         return chain.filter(exchange);
     }
+
+    /**
+     * Classifies a path in a single pass over its characters, without allocating.
+     *
+     * @param path the path of the request.
+     * @return whether the path starts with {@code /}, without a server prefix, a period or a line terminator.
+     */
+    boolean forwardsToIndex(String path) {
+        if (path.isEmpty() || path.charAt(0) != '/' || serverPrefixes.matches(path)) {
+            return false;
+        }
+        for (int i = 1; i < path.length(); i++) {
+            switch (path.charAt(i)) {
+                // the line terminators are not matched by the "/(.*)" pattern used before
+                case '.', '\n', '\r', '\u0085', '\u2028', '\u2029':
+                    return false;
+                default:
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Trie of prefixes, built once, each node holding its children in a small array scanned in order.
+     */
+    private static final class PrefixTrie {
+
+        private char[] labels = new char[0];
+
+        private PrefixTrie[] children = new PrefixTrie[0];
+
+        private boolean terminal;
+
+        private PrefixTrie() {}
+
+        private PrefixTrie(List<String> prefixes) {
+            for (String prefix : prefixes) {
+                PrefixTrie node = this;
+                for (int i = 0; i < prefix.length(); i++) {
+                    node = node.childOrCreate(prefix.charAt(i));
+                }
+                node.terminal = true;
+            }
+        }
+
+        boolean matches(String path) {
+            PrefixTrie node = this;
+            for (int i = 0; i < path.length() && !node.terminal; i++) {
+                node = node.child(path.charAt(i));
+                if (node == null) {
+                    return false;
+                }
+            }
+            return node.terminal;
+        }
+
+        private PrefixTrie child(char label) {
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == label) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private PrefixTrie childOrCreate(char label) {
+            PrefixTrie child = child(label);
+            if (child == null) {
+                child = new PrefixTrie();
+                labels = Arrays.copyOf(labels, labels.length + 1);
+                labels[labels.length - 1] = label;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
 }
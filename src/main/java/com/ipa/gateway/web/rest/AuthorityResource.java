@@ -2,6 +2,7 @@ package com.ipa.gateway.web.rest;
 
 import com.ipa.gateway.domain.Authority;
 import com.ipa.gateway.repository.AuthorityRepository;
+import com.ipa.gateway.service.AuthorityRegistry;
 import com.ipa.gateway.web.rest.errors.BadRequestAlertException;
 import jakarta.validation.Valid;
 import java.net.URI;
@@ -37,8 +38,11 @@ public class AuthorityResource {
 
     private final AuthorityRepository authorityRepository;
 
-    public AuthorityResource(AuthorityRepository authorityRepository) {
+    private final AuthorityRegistry authorityRegistry;
+
+    public AuthorityResource(AuthorityRepository authorityRepository, AuthorityRegistry authorityRegistry) {
         this.authorityRepository = authorityRepository;
+        this.authorityRegistry = authorityRegistry;
     }
 
     /**
@@ -60,6 +64,7 @@ public class AuthorityResource {
                 }
                 return authorityRepository
                     .save(authority)
+                    .flatMap(result -> authorityRegistry.changed().thenReturn(result))
                     .map(result -> {
                         try {
                             return ResponseEntity.created(new URI("/api/authorities/" + result.getName()))
@@ -81,7 +86,7 @@ public class AuthorityResource {
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN')")
     public Mono<List<Authority>> getAllAuthorities() {
         LOG.debug("REST request to get all Authorities");
-        return authorityRepository.findAll().collectList();
+        return authorityRegistry.getAuthorities();
     }
 
     /**
@@ -92,7 +97,7 @@ public class AuthorityResource {
     @PreAuthorize("hasAnyAuthority('ROLE_ADMIN')")
     public Flux<Authority> getAllAuthoritiesAsStream() {
         LOG.debug("REST request to get all Authorities as a stream");
-        return authorityRepository.findAll();
+        return authorityRegistry.getAuthorities().flatMapIterable(authorities -> authorities);
     }
 
     /**
@@ -121,6 +126,7 @@ public class AuthorityResource {
         LOG.debug("REST request to delete Authority : {}", id);
         return authorityRepository
             .deleteById(id)
+            .then(authorityRegistry.changed())
             .then(
                 Mono.just(
                     ResponseEntity.noContent().headers(HeaderUtil.createEntityDeletionAlert(applicationName, true, ENTITY_NAME, id)).build()
@@ -1,29 +1,49 @@
 package com.ipa.gateway.web.rest;
 
-import com.ipa.gateway.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.domain.Book;
+import com.ipa.gateway.repository.Keyset;
 import com.ipa.gateway.service.BookService;
+import com.ipa.gateway.service.CountProvider;
 import com.ipa.gateway.service.dto.BookDTO;
+import com.ipa.gateway.service.dto.BulkItemResultDTO;
 import com.ipa.gateway.web.rest.errors.BadRequestAlertException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapperImpl;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.util.ForwardedHeaderUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.HeaderUtil;
 import tech.jhipster.web.util.PaginationUtil;
-import tech.jhipster.web.util.reactive.ResponseUtil;
 
 /**
  * REST controller for managing {@link com.ipa.gateway.domain.Book}.
@@ -41,11 +61,22 @@ public class BookResource {
 
     private final BookService bookService;
 
-    private final BookRepository bookRepository;
+    private final CountProvider countProvider;
 
-    public BookResource(BookService bookService, BookRepository bookRepository) {
+    private final ObjectWriter bookWriter;
+
+    private final int exportChunkSize;
+
+    public BookResource(
+        BookService bookService,
+        CountProvider countProvider,
+        ObjectMapper objectMapper,
+        ApplicationProperties applicationProperties
+    ) {
         this.bookService = bookService;
-        this.bookRepository = bookRepository;
+        this.countProvider = countProvider;
+        this.bookWriter = objectMapper.writerFor(BookDTO.class);
+        this.exportChunkSize = applicationProperties.getExport().getChunkSize();
     }
 
     /**
@@ -74,6 +105,33 @@ public class BookResource {
             });
     }
 
+    /**
+     * {@code POST  /books/_bulk} : Create new books, in one transaction.
+     *
+     * @param bookDTOs the bookDTOs to create, as a JSON array or newline delimited JSON.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the result of each book, with status
+     * {@code 201 (Created)} and its new ID, or with status {@code 400 (Bad Request)} if the book has already an ID.
+     */
+    @PostMapping(value = "/_bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public Mono<ResponseEntity<List<BulkItemResultDTO>>> createBooks(@RequestBody Flux<BookDTO> bookDTOs) {
+        LOG.debug("REST request to save Books in bulk");
+        return bookService.saveAll(bookDTOs).collectList().map(results -> ResponseEntity.ok().body(results));
+    }
+
+    /**
+     * {@code PUT  /books/_bulk} : Updates existing books, in one transaction.
+     *
+     * @param bookDTOs the bookDTOs to update, as a JSON array or newline delimited JSON.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the result of each book, with status
+     * {@code 200 (OK)}, or with status {@code 400 (Bad Request)} if the book has no ID,
+     * or with status {@code 404 (Not Found)} if the book is not found.
+     */
+    @PutMapping(value = "/_bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public Mono<ResponseEntity<List<BulkItemResultDTO>>> updateBooks(@RequestBody Flux<BookDTO> bookDTOs) {
+        LOG.debug("REST request to update Books in bulk");
+        return bookService.updateAll(bookDTOs).collectList().map(results -> ResponseEntity.ok().body(results));
+    }
+
     /**
      * {@code PUT  /books/:id} : Updates an existing book.
      *
@@ -81,13 +139,16 @@ public class BookResource {
      * @param bookDTO the bookDTO to update.
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated bookDTO,
      * or with status {@code 400 (Bad Request)} if the bookDTO is not valid,
+     * or with status {@code 404 (Not Found)} if the bookDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the book does not match {@code If-Match},
      * or with status {@code 500 (Internal Server Error)} if the bookDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PutMapping("/{id}")
     public Mono<ResponseEntity<BookDTO>> updateBook(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody BookDTO bookDTO
+        @RequestBody BookDTO bookDTO,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         LOG.debug("REST request to update Book : {}, {}", id, bookDTO);
         if (bookDTO.getId() == null) {
@@ -97,22 +158,17 @@ public class BookResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        return bookRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                return bookService
-                    .update(bookDTO)
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(result ->
-                        ResponseEntity.ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
-                            .body(result)
-                    );
-            });
+        Mono<BookDTO> updated = ifMatch == null
+            ? bookService.update(bookDTO)
+            : updateIfMatches(id, ifMatch, current -> bookService.update(bookDTO, current));
+        return updated
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(result ->
+                ResponseEntity.ok()
+                    .eTag(eTagOf(result))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, result.getId().toString()))
+                    .body(result)
+            );
     }
 
     /**
@@ -123,13 +179,15 @@ public class BookResource {
      * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the updated bookDTO,
      * or with status {@code 400 (Bad Request)} if the bookDTO is not valid,
      * or with status {@code 404 (Not Found)} if the bookDTO is not found,
+     * or with status {@code 412 (Precondition Failed)} if the book does not match {@code If-Match},
      * or with status {@code 500 (Internal Server Error)} if the bookDTO couldn't be updated.
      * @throws URISyntaxException if the Location URI syntax is incorrect.
      */
     @PatchMapping(value = "/{id}", consumes = { "application/json", "application/merge-patch+json" })
     public Mono<ResponseEntity<BookDTO>> partialUpdateBook(
         @PathVariable(value = "id", required = false) final Long id,
-        @RequestBody BookDTO bookDTO
+        @RequestBody BookDTO bookDTO,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
     ) throws URISyntaxException {
         LOG.debug("REST request to partial update Book partially : {}, {}", id, bookDTO);
         if (bookDTO.getId() == null) {
@@ -139,64 +197,208 @@ public class BookResource {
             throw new BadRequestAlertException("Invalid ID", ENTITY_NAME, "idinvalid");
         }
 
-        return bookRepository
-            .existsById(id)
-            .flatMap(exists -> {
-                if (!exists) {
-                    return Mono.error(new BadRequestAlertException("Entity not found", ENTITY_NAME, "idnotfound"));
-                }
-
-                Mono<BookDTO> result = bookService.partialUpdate(bookDTO);
+        Mono<BookDTO> result = ifMatch == null
+            ? bookService.partialUpdate(bookDTO)
+            : updateIfMatches(id, ifMatch, current -> bookService.partialUpdate(bookDTO, current));
+        return result
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
+            .map(res ->
+                ResponseEntity.ok()
+                    .eTag(eTagOf(res))
+                    .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
+                    .body(res)
+            );
+    }
 
-                return result
-                    .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)))
-                    .map(res ->
-                        ResponseEntity.ok()
-                            .headers(HeaderUtil.createEntityUpdateAlert(applicationName, true, ENTITY_NAME, res.getId().toString()))
-                            .body(res)
-                    );
+    /**
+     * Applies an update if the current book matches {@code If-Match}. The update is a compare and set on the content
+     * the entity tag was computed from, so a book changed in between fails the precondition too.
+     */
+    private Mono<BookDTO> updateIfMatches(Long id, String ifMatch, Function<BookDTO, Mono<BookDTO>> update) {
+        return bookService
+            .findOne(id)
+            .flatMap(current -> {
+                if (!ETags.matches(ifMatch, eTagOf(current))) {
+                    return Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED));
+                }
+                return update.apply(current).switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.PRECONDITION_FAILED)));
             });
     }
 
+    private static String eTagOf(BookDTO book) {
+        return ETags.of(book.getId(), book.getName(), book.getDescription(), book.getPrice());
+    }
+
     /**
      * {@code GET  /books} : get all the books.
+     * <p>
+     * When an {@code after} or {@code before} cursor is given (an empty one for the first or last page), the books are
+     * paged by keyset instead of offset: the {@code page} parameter is ignored, no total count is computed,
+     * and the {@code Link} header carries the cursors of the next and previous pages.
      *
      * @param pageable the pagination information.
+     * @param after the cursor of the last book of the previous page, if paging by keyset.
+     * @param before the cursor of the first book of the next page, if paging backwards by keyset.
      * @param request a {@link ServerHttpRequest} request.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of books in body.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and the list of books in body,
+     * or with status {@code 304 (Not Modified)} if the page matches {@code If-None-Match}.
      */
     @GetMapping(value = "", produces = MediaType.APPLICATION_JSON_VALUE)
     public Mono<ResponseEntity<List<BookDTO>>> getAllBooks(
         @org.springdoc.core.annotations.ParameterObject Pageable pageable,
+        @RequestParam(value = "after", required = false) String after,
+        @RequestParam(value = "before", required = false) String before,
         ServerHttpRequest request
     ) {
+        if (after != null || before != null) {
+            return getAllBooksByKeyset(pageable, after, before, request);
+        }
         LOG.debug("REST request to get a page of Books");
-        return bookService
-            .countAll()
+        return countProvider
+            .count(Book.class, bookService.countAll())
             .zipWith(bookService.findAll(pageable).collectList())
-            .map(countWithEntities ->
-                ResponseEntity.ok()
-                    .headers(
-                        PaginationUtil.generatePaginationHttpHeaders(
-                            ForwardedHeaderUtils.adaptFromForwardedHeaders(request.getURI(), request.getHeaders()),
-                            new PageImpl<>(countWithEntities.getT2(), pageable, countWithEntities.getT1())
-                        )
-                    )
-                    .body(countWithEntities.getT2())
-            );
+            .map(countWithEntities -> {
+                HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(
+                    ForwardedHeaderUtils.adaptFromForwardedHeaders(request.getURI(), request.getHeaders()),
+                    new PageImpl<>(countWithEntities.getT2(), pageable, countWithEntities.getT1().getValue())
+                );
+                headers.add(CountProvider.TOTAL_COUNT_EXACT_HEADER, String.valueOf(countWithEntities.getT1().isExact()));
+                List<Object> content = new ArrayList<>(headers.toSingleValueMap().values());
+                countWithEntities.getT2().forEach(book -> content.add(eTagOf(book)));
+                return ResponseEntity.ok().eTag(ETags.of(content.toArray())).headers(headers).body(countWithEntities.getT2());
+            });
+    }
+
+    private Mono<ResponseEntity<List<BookDTO>>> getAllBooksByKeyset(
+        Pageable pageable,
+        String after,
+        String before,
+        ServerHttpRequest request
+    ) {
+        LOG.debug("REST request to get a keyset page of Books");
+        Keyset keyset;
+        try {
+            keyset = Keyset.of(pageable.getSort(), pageable.getPageSize(), after, before);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestAlertException("Invalid cursor", ENTITY_NAME, "cursorinvalid");
+        }
+        return Flux.defer(() -> bookService.findAll(keyset))
+            .onErrorMap(IllegalArgumentException.class, e -> new BadRequestAlertException(e.getMessage(), ENTITY_NAME, "sortinvalid"))
+            .collectList()
+            .map(rows -> {
+                boolean hasMore = rows.size() > keyset.getSize();
+                List<BookDTO> books = new ArrayList<>(rows.subList(0, Math.min(rows.size(), keyset.getSize())));
+                if (keyset.isBackward()) {
+                    Collections.reverse(books);
+                }
+                UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUri(
+                    ForwardedHeaderUtils.adaptFromForwardedHeaders(request.getURI(), request.getHeaders())
+                ).replaceQueryParam("page");
+                List<String> links = new ArrayList<>();
+                if (!books.isEmpty()) {
+                    if (keyset.isBackward() ? keyset.hasCursor() : hasMore) {
+                        String cursor = cursorOf(books.get(books.size() - 1), keyset);
+                        links.add(keysetLink(uriBuilder.cloneBuilder(), "after", cursor, "next"));
+                    }
+                    if (keyset.isBackward() ? hasMore : keyset.hasCursor()) {
+                        links.add(keysetLink(uriBuilder.cloneBuilder(), "before", cursorOf(books.get(0), keyset), "prev"));
+                    }
+                }
+                links.add(keysetLink(uriBuilder.cloneBuilder(), "after", "", "first"));
+                links.add(keysetLink(uriBuilder.cloneBuilder(), "before", "", "last"));
+                HttpHeaders headers = new HttpHeaders();
+                headers.add(HttpHeaders.LINK, String.join(",", links));
+                List<Object> content = new ArrayList<>(links);
+                books.forEach(book -> content.add(eTagOf(book)));
+                return ResponseEntity.ok().eTag(ETags.of(content.toArray())).headers(headers).body(books);
+            });
+    }
+
+    private static String cursorOf(BookDTO book, Keyset keyset) {
+        return Keyset.cursor(new BeanWrapperImpl(book).getPropertyValue(keyset.getProperty()), book.getId());
+    }
+
+    private static String keysetLink(UriComponentsBuilder uriBuilder, String cursorParam, String cursor, String relType) {
+        String uri = uriBuilder.replaceQueryParam("after").replaceQueryParam("before").queryParam(cursorParam, cursor).toUriString();
+        return "<" + uri + ">; rel=\"" + relType + "\"";
+    }
+
+    /**
+     * {@code GET  /books} : export all the books as newline delimited JSON, ordered by id.
+     * <p>
+     * The books are read from a database cursor and written in chunks as the client consumes them, so the memory used
+     * does not depend on the number of books.
+     *
+     * @param afterId the id after which to start, to resume an interrupted export.
+     * @param response the response, which allocates the buffers.
+     * @return the {@link Flux} of the serialized books.
+     */
+    @GetMapping(value = "", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<DataBuffer> getAllBooksAsStream(
+        @RequestParam(value = "afterId", required = false) Long afterId,
+        ServerHttpResponse response
+    ) {
+        LOG.debug("REST request to export all Books as a stream");
+        DataBufferFactory bufferFactory = response.bufferFactory();
+        return bookService
+            .streamAll(afterId)
+            .buffer(exportChunkSize)
+            .map(books -> {
+                DataBuffer buffer = bufferFactory.allocateBuffer(books.size() * 128);
+                try (OutputStream out = buffer.asOutputStream()) {
+                    for (BookDTO book : books) {
+                        out.write(bookWriter.writeValueAsBytes(book));
+                        out.write('\n');
+                    }
+                } catch (IOException e) {
+                    DataBufferUtils.release(buffer);
+                    throw new UncheckedIOException(e);
+                }
+                return buffer;
+            });
+    }
+
+    /**
+     * {@code GET  /books} : export all the books as server-sent events, ordered by id.
+     * <p>
+     * Each event carries the id of its book, so that a client reconnecting with {@code Last-Event-ID} resumes after it.
+     *
+     * @param lastEventId the id of the last book received before the connection was lost.
+     * @return the {@link Flux} of events.
+     */
+    @GetMapping(value = "", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<BookDTO>> getAllBooksAsEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        LOG.debug("REST request to export all Books as events after : {}", lastEventId);
+        return bookService.streamAll(lastEventId).map(book -> ServerSentEvent.builder(book).id(book.getId().toString()).build());
     }
 
     /**
      * {@code GET  /books/:id} : get the "id" book.
      *
      * @param id the id of the bookDTO to retrieve.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the bookDTO, or with status {@code 404 (Not Found)}.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the bookDTO, or with status {@code 404 (Not Found)},
+     * or with status {@code 304 (Not Modified)} if it matches {@code If-None-Match}.
      */
     @GetMapping("/{id}")
     public Mono<ResponseEntity<BookDTO>> getBook(@PathVariable("id") Long id) {
         LOG.debug("REST request to get Book : {}", id);
-        Mono<BookDTO> bookDTO = bookService.findOne(id);
-        return ResponseUtil.wrapOrNotFound(bookDTO);
+        return bookService
+            .findOne(id)
+            .map(bookDTO -> ResponseEntity.ok().eTag(eTagOf(bookDTO)).body(bookDTO))
+            .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND)));
+    }
+
+    /**
+     * {@code DELETE  /books/_bulk} : delete books, in one transaction.
+     *
+     * @param ids the ids of the books to delete, as a JSON array or newline delimited JSON.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body the result of each book, with status
+     * {@code 204 (No Content)}, or with status {@code 404 (Not Found)} if the book is not found.
+     */
+    @DeleteMapping(value = "/_bulk", consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE })
+    public Mono<ResponseEntity<List<BulkItemResultDTO>>> deleteBooks(@RequestBody Flux<Long> ids) {
+        LOG.debug("REST request to delete Books in bulk");
+        return bookService.deleteAll(ids).collectList().map(results -> ResponseEntity.ok().body(results));
     }
 
     /**
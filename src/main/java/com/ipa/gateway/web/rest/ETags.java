@@ -0,0 +1,53 @@
+package com.ipa.gateway.web.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Utility class computing strong entity tags from the content of a response, and evaluating {@code If-Match}.
+ * <p>
+ * Responses returned with an {@code ETag} by a {@code GET} are answered with {@code 304 (Not Modified)} by Spring
+ * when the {@code If-None-Match} request header matches, before the body is serialized.
+ */
+final class ETags {
+
+    private ETags() {}
+
+    /**
+     * Computes a strong entity tag from the given values, in order.
+     *
+     * @param values the values, which may be null.
+     * @return the quoted entity tag.
+     */
+    static String of(Object... values) {
+        StringBuilder content = new StringBuilder();
+        for (Object value : values) {
+            // the length prefix keeps ("ab", "c") and ("a", "bc") apart, and null apart from "null"
+            String text = Objects.toString(value, null);
+            if (text == null) {
+                content.append("-1:");
+            } else {
+                content.append(text.length()).append(':').append(text);
+            }
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Evaluates an {@code If-Match} header with the strong comparison of RFC 9110.
+     *
+     * @param ifMatch the header value, {@code *} or a comma separated list of entity tags.
+     * @param eTag the entity tag of the current representation.
+     * @return whether the precondition holds.
+     */
+    static boolean matches(String ifMatch, String eTag) {
+        for (String candidate : ifMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.equals("*") || trimmed.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
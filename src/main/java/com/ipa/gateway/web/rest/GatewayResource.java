@@ -2,34 +2,52 @@ package com.ipa.gateway.web.rest;
 
 import com.ipa.gateway.security.AuthoritiesConstants;
 import com.ipa.gateway.web.rest.vm.RouteVM;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.client.discovery.event.HeartbeatMonitor;
+import org.springframework.cloud.gateway.event.RefreshRoutesResultEvent;
 import org.springframework.cloud.gateway.route.Route;
 import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.*;
-import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * REST controller for managing Gateway configuration.
+ * <p>
+ * The routes and their instances are kept in memory, and reloaded in the background when the routes are refreshed
+ * or the discovery heartbeat reports a change.
  */
 @RestController
 @RequestMapping("/api/gateway")
 public class GatewayResource {
 
+    private static final Logger LOG = LoggerFactory.getLogger(GatewayResource.class);
+
     private final RouteLocator routeLocator;
 
-    private final DiscoveryClient discoveryClient;
+    private final ReactiveDiscoveryClient discoveryClient;
+
+    private final HeartbeatMonitor heartbeatMonitor = new HeartbeatMonitor();
+
+    private final AtomicReference<Mono<List<RouteVM>>> routes = new AtomicReference<>();
 
     @Value("${spring.application.name}")
     private String appName;
 
-    public GatewayResource(RouteLocator routeLocator, DiscoveryClient discoveryClient) {
+    public GatewayResource(RouteLocator routeLocator, ReactiveDiscoveryClient discoveryClient) {
         this.routeLocator = routeLocator;
         this.discoveryClient = discoveryClient;
+        routes.set(loadRoutes());
     }
 
     /**
@@ -39,23 +57,57 @@ public class GatewayResource {
      */
     @GetMapping("/routes")
     @Secured(AuthoritiesConstants.ADMIN)
-    public ResponseEntity<List<RouteVM>> activeRoutes() {
-        Flux<Route> routes = routeLocator.getRoutes();
-        List<RouteVM> routeVMs = new ArrayList<>();
-        routes.subscribe(route -> {
-            RouteVM routeVM = new RouteVM();
-            // Manipulate strings to make Gateway routes look like Zuul's
-            String predicate = route.getPredicate().toString();
-            String path = predicate.substring(predicate.indexOf("[") + 1, predicate.indexOf("]"));
-            routeVM.setPath(path);
-            String serviceId = route.getId().substring(route.getId().indexOf("_") + 1).toLowerCase();
-            routeVM.setServiceId(serviceId);
+    public Mono<ResponseEntity<List<RouteVM>>> activeRoutes() {
+        return Mono.defer(routes::get).map(ResponseEntity::ok);
+    }
+
+    @EventListener({ ApplicationReadyEvent.class, RefreshRoutesResultEvent.class })
+    public void onRoutesRefreshed() {
+        refresh();
+    }
+
+    @EventListener
+    public void onHeartbeat(HeartbeatEvent event) {
+        if (heartbeatMonitor.update(event.getValue())) {
+            refresh();
+        }
+    }
+
+    private void refresh() {
+        Mono<List<RouteVM>> loaded = loadRoutes();
+        routes.set(loaded);
+        loaded.subscribe(snapshot -> LOG.debug("Loaded {} gateway routes", snapshot.size()), e ->
+            LOG.warn("Could not load the gateway routes: {}", e.getMessage())
+        );
+    }
+
+    private Mono<List<RouteVM>> loadRoutes() {
+        return routeLocator
+            .getRoutes()
+            .map(GatewayResource::toRouteVM)
             // Exclude gateway app from routes
-            if (!serviceId.equalsIgnoreCase(appName)) {
-                routeVM.setServiceInstances(discoveryClient.getInstances(serviceId));
-                routeVMs.add(routeVM);
-            }
-        });
-        return ResponseEntity.ok(routeVMs);
+            .filter(routeVM -> !routeVM.getServiceId().equalsIgnoreCase(appName))
+            .flatMapSequential(routeVM ->
+                discoveryClient
+                    .getInstances(routeVM.getServiceId())
+                    .collectList()
+                    .map(instances -> {
+                        routeVM.setServiceInstances(List.copyOf(instances));
+                        return routeVM;
+                    })
+            )
+            .collectList()
+            .map(List::copyOf)
+            .cache(snapshot -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    private static RouteVM toRouteVM(Route route) {
+        RouteVM routeVM = new RouteVM();
+        // Manipulate strings to make Gateway routes look like Zuul's
+        String predicate = route.getPredicate().toString();
+        String path = predicate.substring(predicate.indexOf("[") + 1, predicate.indexOf("]"));
+        routeVM.setPath(path);
+        routeVM.setServiceId(route.getId().substring(route.getId().indexOf("_") + 1).toLowerCase());
+        return routeVM;
     }
 }
@@ -1,17 +1,20 @@
 package com.ipa.gateway.web.rest;
 
+import com.ipa.gateway.domain.User;
+import com.ipa.gateway.service.CountProvider;
 import com.ipa.gateway.service.UserService;
 import com.ipa.gateway.service.dto.UserDTO;
 import java.util.ArrayList;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.util.ForwardedHeaderUtils;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import tech.jhipster.web.util.PaginationUtil;
 
@@ -23,8 +26,11 @@ public class PublicUserResource {
 
     private final UserService userService;
 
-    public PublicUserResource(UserService userService) {
+    private final CountProvider countProvider;
+
+    public PublicUserResource(UserService userService, CountProvider countProvider) {
         this.userService = userService;
+        this.countProvider = countProvider;
     }
 
     /**
@@ -32,24 +38,28 @@ public class PublicUserResource {
      *
      * @param request a {@link ServerHttpRequest} request.
      * @param pageable the pagination information.
-     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all users.
+     * @return the {@link ResponseEntity} with status {@code 200 (OK)} and with body all users,
+     * or with status {@code 304 (Not Modified)} if the page matches {@code If-None-Match}.
      */
     @GetMapping("/users")
-    public Mono<ResponseEntity<Flux<UserDTO>>> getAllPublicUsers(
+    public Mono<ResponseEntity<List<UserDTO>>> getAllPublicUsers(
         ServerHttpRequest request,
         @org.springdoc.core.annotations.ParameterObject Pageable pageable
     ) {
         LOG.debug("REST request to get all public User names");
 
-        return userService
-            .countManagedUsers()
-            .map(total -> new PageImpl<>(new ArrayList<>(), pageable, total))
-            .map(page ->
-                PaginationUtil.generatePaginationHttpHeaders(
+        return countProvider
+            .count(User.class, userService.countManagedUsers())
+            .zipWith(userService.getAllPublicUsers(pageable).collectList())
+            .map(countWithUsers -> {
+                HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(
                     ForwardedHeaderUtils.adaptFromForwardedHeaders(request.getURI(), request.getHeaders()),
-                    page
-                )
-            )
-            .map(headers -> ResponseEntity.ok().headers(headers).body(userService.getAllPublicUsers(pageable)));
+                    new PageImpl<>(new ArrayList<>(), pageable, countWithUsers.getT1().getValue())
+                );
+                headers.add(CountProvider.TOTAL_COUNT_EXACT_HEADER, String.valueOf(countWithUsers.getT1().isExact()));
+                List<Object> content = new ArrayList<>(headers.toSingleValueMap().values());
+                countWithUsers.getT2().forEach(user -> content.add(ETags.of(user.getId(), user.getLogin())));
+                return ResponseEntity.ok().eTag(ETags.of(content.toArray())).headers(headers).body(countWithUsers.getT2());
+            });
     }
 }
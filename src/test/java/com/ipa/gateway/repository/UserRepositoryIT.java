@@ -0,0 +1,141 @@
+package com.ipa.gateway.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.ipa.gateway.IntegrationTest;
+import com.ipa.gateway.config.Constants;
+import com.ipa.gateway.domain.Authority;
+import com.ipa.gateway.domain.User;
+import com.ipa.gateway.security.AuthoritiesConstants;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Integration tests for the paging and sorting of {@link UserRepository#findAllWithAuthorities(Pageable)} in SQL,
+ * against the result of sorting and paging all the users in memory.
+ */
+@IntegrationTest
+class UserRepositoryIT {
+
+    private static final int USERS = 7;
+
+    private static final int PAGE_SIZE = 3;
+
+    /**
+     * Properties of the users sorted on, with unique values, so that their order is the same in memory and in SQL.
+     */
+    private static final Map<String, Function<User, String>> SORTED_PROPERTIES = Map.of(
+        "id",
+        User::getId,
+        "login",
+        User::getLogin,
+        "lastName",
+        User::getLastName
+    );
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @BeforeEach
+    void init() {
+        cleanup();
+        for (int i = 0; i < USERS; i++) {
+            User user = new User();
+            user.setId("repository-" + i);
+            user.setLogin("repository_user_" + i);
+            user.setEmail("repository_user_" + i + "@localhost");
+            // in the reverse order of the logins
+            user.setLastName("doe_" + (USERS - i));
+            user.setActivated(true);
+            user.setCreatedBy(Constants.SYSTEM);
+            userRepository.create(user).block();
+            // none, one, or several authorities
+            List<String> authorities = switch (i % 3) {
+                case 0 -> List.of();
+                case 1 -> List.of(AuthoritiesConstants.USER);
+                default -> List.of(AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN);
+            };
+            userRepository.saveUserAuthorities(user.getId(), authorities).block();
+        }
+    }
+
+    @AfterEach
+    void cleanup() {
+        userRepository.deleteAllUserAuthorities().block();
+        userRepository.deleteAll().block();
+    }
+
+    @Test
+    void testPagesMatchTheInMemoryResult() {
+        for (Sort sort : List.of(
+            Sort.unsorted(),
+            Sort.by("login").ascending(),
+            Sort.by("login").descending(),
+            Sort.by("lastName").ascending(),
+            Sort.by("lastName").descending()
+        )) {
+            for (int page = 0; page * PAGE_SIZE < USERS; page++) {
+                Pageable pageable = PageRequest.of(page, PAGE_SIZE, sort);
+
+                List<User> users = userRepository.findAllWithAuthorities(pageable).collectList().block();
+
+                assertThat(describe(users)).as(pageable.toString()).containsExactlyElementsOf(describe(inMemory(pageable)));
+            }
+        }
+    }
+
+    @Test
+    void testUsersWithoutAuthoritiesHaveAnEmptySet() {
+        List<User> users = userRepository.findAllWithAuthorities(PageRequest.of(0, USERS, Sort.by("login"))).collectList().block();
+
+        assertThat(users).hasSize(USERS);
+        assertThat(users.get(0).getAuthorities()).isEmpty();
+        assertThat(users.get(2).getAuthorities())
+            .extracting(Authority::getName)
+            .containsExactlyInAnyOrder(AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN);
+    }
+
+    @Test
+    void testUnknownSortPropertyIsRejected() {
+        assertThatThrownBy(() -> userRepository.findAllWithAuthorities(PageRequest.of(0, PAGE_SIZE, Sort.by("unknown"))).blockLast())
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("unknown");
+        assertThatThrownBy(() ->
+            userRepository.findAllWithAuthorities(PageRequest.of(0, PAGE_SIZE, Sort.by("login; DROP TABLE jhi_user"))).blockLast()
+        ).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /**
+     * The previous implementation: all the users joined with their authorities, sorted on the first property of the
+     * sort, by id by default, then paged in memory.
+     */
+    private List<User> inMemory(Pageable pageable) {
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(Sort.Order.asc("id"));
+        Comparator<User> comparator = Comparator.comparing(SORTED_PROPERTIES.get(order.getProperty()));
+        return userRepository
+            .findAll()
+            .flatMap(user -> userRepository.findOneWithAuthoritiesByLogin(user.getLogin()))
+            .sort(order.isAscending() ? comparator : comparator.reversed())
+            .skip(pageable.getOffset())
+            .take(pageable.getPageSize())
+            .collectList()
+            .block();
+    }
+
+    private static List<String> describe(List<User> users) {
+        return users
+            .stream()
+            .map(user -> user.getLogin() + user.getAuthorities().stream().map(Authority::getName).sorted().toList())
+            .toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ipa.gateway.repository.rowmapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.r2dbc.spi.ColumnMetadata;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.RowMetadata;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.r2dbc.convert.MappingR2dbcConverter;
+import org.springframework.data.r2dbc.convert.R2dbcCustomConversions;
+import org.springframework.data.r2dbc.dialect.PostgresDialect;
+import org.springframework.data.r2dbc.mapping.R2dbcMappingContext;
+
+/**
+ * Test class for the {@link ColumnConverter}.
+ */
+class ColumnConverterTest {
+
+    private ColumnConverter converter;
+
+    private RowMetadata metadata;
+
+    private Row row;
+
+    @BeforeEach
+    void init() {
+        R2dbcCustomConversions conversions = R2dbcCustomConversions.of(PostgresDialect.INSTANCE, List.of());
+        converter = new ColumnConverter(conversions, new MappingR2dbcConverter(new R2dbcMappingContext(), conversions));
+        ColumnMetadata id = column("e_id", Long.class);
+        ColumnMetadata price = column("e_price", Integer.class);
+        metadata = mock(RowMetadata.class);
+        when(metadata.getColumnMetadatas()).thenAnswer(invocation -> List.of(id, price));
+        row = mock(Row.class);
+        when(row.getMetadata()).thenReturn(metadata);
+    }
+
+    @Test
+    void testReaderReadsMatchingTypeFromDriver() {
+        when(row.get(0, Long.class)).thenReturn(42L);
+
+        assertThat(converter.reader(metadata, "E_ID", Long.class).read(row)).isEqualTo(42L);
+        verify(row, never()).get(anyInt());
+    }
+
+    @Test
+    void testReaderConvertsOtherTypes() {
+        when(row.get(1)).thenReturn(7);
+
+        assertThat(converter.reader(metadata, "e_price", Long.class).read(row)).isEqualTo(7L);
+        verify(row, never()).get(eq(1), eq(Long.class));
+    }
+
+    @Test
+    void testReaderRejectsUnknownColumn() {
+        assertThatIllegalArgumentException().isThrownBy(() -> converter.reader(metadata, "e_unknown", Long.class));
+    }
+
+    @Test
+    void testFromRow() {
+        when(row.get(1)).thenReturn(7);
+
+        assertThat(converter.fromRow(row, "e_price", Long.class)).isEqualTo(7L);
+    }
+
+    private static ColumnMetadata column(String name, Class<?> javaType) {
+        ColumnMetadata column = mock(ColumnMetadata.class);
+        when(column.getName()).thenReturn(name);
+        when(column.getJavaType()).thenAnswer(invocation -> javaType);
+        return column;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ipa.gateway.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link CachingReactiveJwtDecoder}.
+ */
+class CachingReactiveJwtDecoderTest {
+
+    private static final String TOKEN = "header.payload.signature";
+
+    private ReactiveJwtDecoder delegate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private CachingReactiveJwtDecoder decoder;
+
+    @BeforeEach
+    void init() {
+        delegate = mock(ReactiveJwtDecoder.class);
+        meterRegistry = new SimpleMeterRegistry();
+        decoder = new CachingReactiveJwtDecoder(delegate, 100, Duration.ofMinutes(5), meterRegistry);
+    }
+
+    @Test
+    void testValidTokenIsDecodedOnce() {
+        Jwt jwt = jwt(Instant.now().plusSeconds(60));
+        when(delegate.decode(TOKEN)).thenReturn(Mono.just(jwt));
+
+        assertThat(decoder.decode(TOKEN).block()).isSameAs(jwt);
+        assertThat(decoder.decode(TOKEN).block()).isSameAs(jwt);
+
+        verify(delegate, times(1)).decode(TOKEN);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "jwtDecoder").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testExpiredTokenIsNotCached() {
+        Jwt jwt = jwt(Instant.now().minusSeconds(60));
+        when(delegate.decode(TOKEN)).thenReturn(Mono.just(jwt));
+
+        decoder.decode(TOKEN).block();
+        decoder.decode(TOKEN).block();
+
+        verify(delegate, times(2)).decode(TOKEN);
+    }
+
+    @Test
+    void testTokenWithoutExpiryIsNotCached() {
+        Jwt jwt = jwt(null);
+        when(delegate.decode(TOKEN)).thenReturn(Mono.just(jwt));
+
+        decoder.decode(TOKEN).block();
+        decoder.decode(TOKEN).block();
+
+        verify(delegate, times(2)).decode(TOKEN);
+    }
+
+    private static Jwt jwt(Instant expiresAt) {
+        Jwt.Builder builder = Jwt.withTokenValue(TOKEN).header("alg", "RS256").subject("user").issuedAt(Instant.now().minusSeconds(120));
+        if (expiresAt != null) {
+            builder.expiresAt(expiresAt);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.ipa.gateway.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link JwkSetCache}.
+ */
+class JwkSetCacheTest {
+
+    private static final String JWK_SET_URI = "https://idp.example.com/jwks";
+
+    private static final Duration TIMEOUT = Duration.ofMillis(100);
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    private final AtomicReference<JWKSet> served = new AtomicReference<>();
+
+    private WebClient webClient;
+
+    private RSAKey firstKey;
+
+    private RSAKey secondKey;
+
+    @BeforeEach
+    void init() throws JOSEException {
+        firstKey = new RSAKeyGenerator(2048).keyID("first").generate();
+        secondKey = new RSAKeyGenerator(2048).keyID("second").generate();
+        served.set(new JWKSet(firstKey.toPublicJWK()));
+        webClient = WebClient.builder()
+            .exchangeFunction(request -> {
+                fetches.incrementAndGet();
+                return Mono.just(
+                    ClientResponse.create(HttpStatus.OK)
+                        .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .body(served.get().toString())
+                        .build()
+                );
+            })
+            .build();
+    }
+
+    @Test
+    void testKnownKeyIsServedFromMemory() {
+        JwkSetCache jwkSetCache = new JwkSetCache(webClient, JWK_SET_URI, Duration.ZERO, TIMEOUT);
+        jwkSetCache.refresh().block();
+
+        assertThat(jwkSetCache.apply(jwt("first")).collectList().block()).extracting(JWK::getKeyID).containsExactly("first");
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void testUnknownKeyTriggersRefresh() {
+        JwkSetCache jwkSetCache = new JwkSetCache(webClient, JWK_SET_URI, Duration.ZERO, TIMEOUT);
+        jwkSetCache.refresh().block();
+        served.set(new JWKSet(secondKey.toPublicJWK()));
+
+        assertThat(jwkSetCache.apply(jwt("second")).collectList().block()).extracting(JWK::getKeyID).containsExactly("second");
+        assertThat(fetches).hasValue(2);
+    }
+
+    @Test
+    void testUnknownKeyRefreshIsRateLimited() {
+        JwkSetCache jwkSetCache = new JwkSetCache(webClient, JWK_SET_URI, Duration.ofMinutes(1), TIMEOUT);
+        jwkSetCache.refresh().block();
+        served.set(new JWKSet(secondKey.toPublicJWK()));
+
+        assertThat(jwkSetCache.apply(jwt("second")).collectList().block()).isEmpty();
+        assertThat(fetches).hasValue(1);
+    }
+
+    @Test
+    void testHungFetchTimesOut() {
+        WebClient hung = WebClient.builder()
+            .exchangeFunction(request -> {
+                fetches.incrementAndGet();
+                return Mono.never();
+            })
+            .build();
+        JwkSetCache jwkSetCache = new JwkSetCache(hung, JWK_SET_URI, Duration.ZERO, TIMEOUT);
+
+        assertThatThrownBy(() -> jwkSetCache.refresh().block(Duration.ofSeconds(5))).hasCauseInstanceOf(TimeoutException.class);
+        assertThatThrownBy(() -> jwkSetCache.refresh().block(Duration.ofSeconds(5))).hasCauseInstanceOf(TimeoutException.class);
+        assertThat(fetches).hasValue(2);
+    }
+
+    private static SignedJWT jwt(String keyId) {
+        return new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(keyId).build(),
+            new JWTClaimsSet.Builder().subject("user").build()
+        );
+    }
+}
@@ -0,0 +1,145 @@
+package com.ipa.gateway.security.oauth2;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ipa.gateway.config.ApplicationProperties;
+import io.netty.handler.timeout.ReadTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Test class for the {@link UserInfoJwtDecoder}, against a stub user info endpoint.
+ */
+class UserInfoJwtDecoderTest {
+
+    private static final String USER_INFO =
+        "{\"sub\":\"jdoe\",\"preferred_username\":\"jdoe\",\"given_name\":\"John\",\"family_name\":\"Doe\"}";
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicReference<String> authorization = new AtomicReference<>();
+
+    private final AtomicReference<Duration> latency = new AtomicReference<>(Duration.ofMillis(200));
+
+    private final ApplicationProperties.Security.UserInfo userInfo = new ApplicationProperties.Security.UserInfo();
+
+    private DisposableServer idp;
+
+    @BeforeEach
+    void init() {
+        idp = HttpServer.create()
+            .host("localhost")
+            .port(0)
+            .route(routes ->
+                routes.get("/userinfo", (request, response) -> {
+                    calls.incrementAndGet();
+                    authorization.set(request.requestHeaders().get(HttpHeaders.AUTHORIZATION));
+                    return Mono.delay(latency.get())
+                        .then(
+                            response
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.just(USER_INFO))
+                                .then()
+                        );
+                })
+            )
+            .bindNow();
+    }
+
+    @AfterEach
+    void dispose() {
+        idp.disposeNow();
+    }
+
+    @Test
+    void testConcurrentDecodesForOneSubjectMakeOneCall() {
+        ReactiveJwtDecoder decoder = decoder();
+
+        List<Jwt> jwts = Flux.range(0, 10).flatMap(i -> decoder.decode("token-" + i)).collectList().block(Duration.ofSeconds(10));
+
+        assertThat(jwts).hasSize(10).allSatisfy(jwt -> assertThat(jwt.getClaimAsString("given_name")).isEqualTo("John"));
+        assertThat(jwts).extracting(Jwt::getTokenValue).doesNotHaveDuplicates();
+        assertThat(calls).hasValue(1);
+        assertThat(authorization.get()).startsWith("Bearer token-");
+    }
+
+    @Test
+    void testCancelledDecodeDoesNotCancelTheSharedCall() throws Exception {
+        ReactiveJwtDecoder decoder = decoder();
+
+        Disposable cancelled = decoder.decode("first").subscribe();
+        CompletableFuture<Jwt> shared = decoder.decode("second").toFuture();
+        cancelled.dispose();
+
+        assertThat(shared.get(10, TimeUnit.SECONDS).getClaimAsString("family_name")).isEqualTo("Doe");
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void testCompleteTokenIsNotLookedUp() {
+        ReactiveJwtDecoder decoder = new UserInfoJwtDecoder(
+            token -> Mono.just(jwt(token).claim("given_name", "Jane").claim("family_name", "Roe").build()),
+            UserInfoJwtDecoder.createClient(WebClient.builder(), userInfo),
+            userInfoUri(),
+            users()
+        );
+
+        assertThat(decoder.decode("token").block(Duration.ofSeconds(10)).getClaimAsString("given_name")).isEqualTo("Jane");
+        assertThat(calls).hasValue(0);
+    }
+
+    @Test
+    void testSlowUserInfoTimesOutAndIsCalledAgain() {
+        userInfo.setResponseTimeout(Duration.ofMillis(100));
+        latency.set(Duration.ofSeconds(1));
+        ReactiveJwtDecoder decoder = decoder();
+
+        assertThatThrownBy(() -> decoder.decode("token").block(Duration.ofSeconds(10))).hasRootCauseInstanceOf(ReadTimeoutException.class);
+
+        latency.set(Duration.ZERO);
+        assertThat(decoder.decode("token").block(Duration.ofSeconds(10)).getClaimAsString("given_name")).isEqualTo("John");
+        assertThat(calls).hasValue(2);
+    }
+
+    private ReactiveJwtDecoder decoder() {
+        return new UserInfoJwtDecoder(
+            token -> Mono.just(jwt(token).build()),
+            UserInfoJwtDecoder.createClient(WebClient.builder(), userInfo),
+            userInfoUri(),
+            users()
+        );
+    }
+
+    private String userInfoUri() {
+        return "http://localhost:" + idp.port() + "/userinfo";
+    }
+
+    private static AsyncCache<String, Map<String, Object>> users() {
+        return Caffeine.newBuilder().maximumSize(10).buildAsync();
+    }
+
+    private static Jwt.Builder jwt(String token) {
+        return Jwt.withTokenValue(token).header("alg", "none").subject("jdoe");
+    }
+}
@@ -0,0 +1,63 @@
+package com.ipa.gateway.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.ipa.gateway.IntegrationTest;
+import com.ipa.gateway.domain.Authority;
+import com.ipa.gateway.repository.AuthorityRepository;
+import com.ipa.gateway.repository.DatabaseNotifications;
+import java.time.Duration;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Integration tests for {@link AuthorityRegistry}.
+ */
+@IntegrationTest
+class AuthorityRegistryIT {
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private DatabaseNotifications databaseNotifications;
+
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+
+    private Authority authority;
+
+    @BeforeEach
+    void init() {
+        authority = new Authority().name(UUID.randomUUID().toString());
+        authorityRegistry.getAuthorities().block();
+    }
+
+    @AfterEach
+    void cleanup() {
+        authorityRepository.delete(authority).block();
+        authorityRegistry.invalidate();
+    }
+
+    @Test
+    void testChangedReloadsAuthorities() {
+        authorityRepository.save(authority).block();
+        authorityRegistry.changed().block();
+
+        assertThat(authorityRegistry.getAuthorityNames().collectList().block()).contains(authority.getName());
+    }
+
+    @Test
+    void testNotificationFromAnotherInstanceReloadsAuthorities() {
+        authorityRepository.save(authority).block();
+        databaseNotifications.notify(AuthorityRegistry.CHANNEL, "").block();
+
+        await()
+            .atMost(Duration.ofSeconds(10))
+            .untilAsserted(() -> assertThat(authorityRegistry.getAuthorityNames().collectList().block()).contains(authority.getName()));
+    }
+}
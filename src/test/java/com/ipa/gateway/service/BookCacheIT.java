@@ -0,0 +1,96 @@
+package com.ipa.gateway.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+import com.ipa.gateway.IntegrationTest;
+import com.ipa.gateway.domain.Book;
+import com.ipa.gateway.repository.BookRepository;
+import com.ipa.gateway.repository.DatabaseNotifications;
+import com.ipa.gateway.service.dto.BookDTO;
+import com.ipa.gateway.service.mapper.BookMapper;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Integration tests for {@link BookCache}.
+ */
+@IntegrationTest
+class BookCacheIT {
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BookMapper bookMapper;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookCache bookCache;
+
+    @Autowired
+    private DatabaseNotifications databaseNotifications;
+
+    private Book book;
+
+    @BeforeEach
+    void init() {
+        book = bookRepository.save(new Book().name("cached").description("description").price(1L)).block();
+    }
+
+    @AfterEach
+    void cleanup() {
+        bookRepository.deleteById(book.getId()).block();
+        bookCache.evictAll().block();
+    }
+
+    @Test
+    void testBookIsServedFromMemoryUntilUpdated() {
+        assertThat(bookService.findOne(book.getId()).block()).extracting(BookDTO::getName).isEqualTo("cached");
+        bookRepository.save(book.name("written behind the cache")).block();
+
+        assertThat(bookService.findOne(book.getId()).block()).extracting(BookDTO::getName).isEqualTo("cached");
+
+        BookDTO update = bookMapper.toDto(book);
+        update.setName("updated");
+        bookService.update(update).block();
+
+        assertThat(bookService.findOne(book.getId()).block()).extracting(BookDTO::getName).isEqualTo("updated");
+    }
+
+    @Test
+    void testConcurrentLookupsShareOneQuery() {
+        AtomicInteger loads = new AtomicInteger();
+
+        Flux.range(0, 10)
+            .flatMap(i ->
+                bookCache.get(book.getId(), id ->
+                    Mono.delay(Duration.ofMillis(100)).then(Mono.fromCallable(loads::incrementAndGet)).thenReturn(bookMapper.toDto(book))
+                )
+            )
+            .blockLast();
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void testNotificationFromAnotherInstanceDiscardsBook() {
+        bookService.findOne(book.getId()).block();
+        bookRepository.save(book.name("changed elsewhere")).block();
+        databaseNotifications.notify(BookCache.CHANNEL, book.getId().toString()).block();
+
+        await()
+            .atMost(Duration.ofSeconds(10))
+            .untilAsserted(() ->
+                assertThat(bookService.findOne(book.getId()).block()).extracting(BookDTO::getName).isEqualTo("changed elsewhere")
+            );
+    }
+}
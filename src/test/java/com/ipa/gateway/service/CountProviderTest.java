@@ -0,0 +1,79 @@
+package com.ipa.gateway.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.domain.Book;
+import com.ipa.gateway.repository.EntityManager;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link CountProvider}.
+ */
+class CountProviderTest {
+
+    private EntityManager entityManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private AtomicInteger exactCounts;
+
+    @BeforeEach
+    void init() {
+        entityManager = mock(EntityManager.class);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getPagination().setCountCacheTtl(Duration.ofMinutes(1));
+        applicationProperties.getPagination().setCountEstimateThreshold(1000);
+        exactCounts = new AtomicInteger();
+    }
+
+    @Test
+    void testExactCountBelowThreshold() {
+        when(entityManager.estimateCount(Book.class)).thenReturn(Mono.just(10L));
+        CountProvider countProvider = new CountProvider(entityManager, applicationProperties);
+
+        CountProvider.Count count = countProvider.count(Book.class, exactCount(12L)).block();
+
+        assertThat(count.getValue()).isEqualTo(12L);
+        assertThat(count.isExact()).isTrue();
+    }
+
+    @Test
+    void testEstimateAboveThreshold() {
+        when(entityManager.estimateCount(Book.class)).thenReturn(Mono.just(5000L));
+        CountProvider countProvider = new CountProvider(entityManager, applicationProperties);
+
+        CountProvider.Count count = countProvider.count(Book.class, exactCount(5012L)).block();
+
+        assertThat(count.getValue()).isEqualTo(5000L);
+        assertThat(count.isExact()).isFalse();
+        assertThat(exactCounts).hasValue(0);
+    }
+
+    @Test
+    void testCountIsCachedUntilInvalidated() {
+        when(entityManager.estimateCount(Book.class)).thenReturn(Mono.empty());
+        CountProvider countProvider = new CountProvider(entityManager, applicationProperties);
+
+        countProvider.count(Book.class, exactCount(3L)).block();
+        countProvider.count(Book.class, exactCount(3L)).block();
+        assertThat(exactCounts).hasValue(1);
+
+        countProvider.invalidate(Book.class);
+        countProvider.count(Book.class, exactCount(3L)).block();
+        assertThat(exactCounts).hasValue(2);
+    }
+
+    private Mono<Long> exactCount(long count) {
+        return Mono.fromCallable(() -> {
+            exactCounts.incrementAndGet();
+            return count;
+        });
+    }
+}
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import com.ipa.gateway.IntegrationTest;
 import com.ipa.gateway.config.Constants;
+import com.ipa.gateway.domain.Authority;
 import com.ipa.gateway.domain.User;
 import com.ipa.gateway.repository.UserRepository;
 import com.ipa.gateway.security.AuthoritiesConstants;
@@ -11,7 +12,9 @@ import com.ipa.gateway.service.dto.AdminUserDTO;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -143,6 +146,39 @@ class UserServiceIT {
         assertThat(userDTO.getLangKey()).isEqualTo("en");
     }
 
+    @Test
+    void testUnchangedUserIsNotSynchronizedAgain() {
+        userDetails.put("sub", "unchanged_service");
+        userService.getUserFromAuthentication(createMockOAuth2AuthenticationToken(userDetails)).block();
+        assertThat(userRepository.findOneByLogin("unchanged_service").blockOptional()).isPresent();
+
+        userRepository.deleteAllUserAuthorities().block();
+        userRepository.deleteAll().block();
+        userService.getUserFromAuthentication(createMockOAuth2AuthenticationToken(userDetails)).block();
+        assertThat(userRepository.findOneByLogin("unchanged_service").blockOptional()).isEmpty();
+
+        userDetails.put("family_name", "changed");
+        userService.getUserFromAuthentication(createMockOAuth2AuthenticationToken(userDetails)).block();
+        assertThat(userRepository.findOneByLogin("unchanged_service").blockOptional())
+            .hasValueSatisfying(synced -> assertThat(synced.getLastName()).isEqualTo("changed"));
+    }
+
+    @Test
+    void testSaveUserInsertsAllAuthoritiesOnce() {
+        user.setId("johndoe_service_id");
+        user.setAuthorities(
+            Set.of(new Authority().name(AuthoritiesConstants.USER), new Authority().name(AuthoritiesConstants.ADMIN))
+        );
+        userService.saveUser(user, true).block();
+
+        assertThat(userRepository.saveUserAuthorities(user.getId(), List.of(AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN)).block())
+            .isZero();
+
+        assertThat(userRepository.findOneWithAuthoritiesByLogin(DEFAULT_LOGIN).block().getAuthorities())
+            .extracting(Authority::getName)
+            .containsExactlyInAnyOrder(AuthoritiesConstants.USER, AuthoritiesConstants.ADMIN);
+    }
+
     private OAuth2AuthenticationToken createMockOAuth2AuthenticationToken(Map<String, Object> userDetails) {
         Collection<GrantedAuthority> authorities = Collections.singletonList(new SimpleGrantedAuthority(AuthoritiesConstants.ANONYMOUS));
         UsernamePasswordAuthenticationToken usernamePasswordAuthenticationToken = new UsernamePasswordAuthenticationToken(
@@ -0,0 +1,197 @@
+package com.ipa.gateway.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import com.ipa.gateway.IntegrationTest;
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.domain.Authority;
+import com.ipa.gateway.domain.User;
+import com.ipa.gateway.repository.AuthorityRepository;
+import com.ipa.gateway.repository.UserRepository;
+import com.ipa.gateway.security.AuthoritiesConstants;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+/**
+ * Integration tests for the write-behind synchronization of the {@link UserService}, which the other tests disable.
+ */
+@IntegrationTest
+class UserServiceWriteBehindIT {
+
+    private static final String LOGIN = "write_behind_service";
+
+    private static final String NEW_AUTHORITY = "ROLE_WRITE_BEHIND";
+
+    /**
+     * Long enough for the queue to be flushed only when the test stops it.
+     */
+    private static final Duration NEVER = Duration.ofHours(1);
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+
+    @Autowired
+    private CountProvider countProvider;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    private UserService userService;
+
+    @AfterEach
+    void cleanup() {
+        userService.stopWriteBehind();
+        userRepository.deleteAllUserAuthorities().block();
+        userRepository.deleteAll().block();
+        authorityRepository.deleteById(NEW_AUTHORITY).block();
+        authorityRegistry.invalidate();
+    }
+
+    @Test
+    void testQueuedUserIsSynchronizedInTheBackground() {
+        userService = userService(userSync -> userSync.setFlushInterval(Duration.ofMillis(50)));
+
+        userService.getUserFromAuthentication(authentication(LOGIN, "doe")).block();
+
+        User synced = userRepository
+            .findOneWithAuthoritiesByLogin(LOGIN)
+            .repeatWhenEmpty(100, attempts -> attempts.delayElements(Duration.ofMillis(50)))
+            .block();
+        assertThat(synced).isNotNull();
+        assertThat(synced.getLastName()).isEqualTo("doe");
+        assertThat(synced.getAuthorities())
+            .extracting(Authority::getName)
+            .containsExactlyInAnyOrder(AuthoritiesConstants.USER, NEW_AUTHORITY);
+    }
+
+    @Test
+    void testBatchWritesTheLatestClaimsUnderTheUserContext() {
+        userService = userService(userSync -> userSync.setFlushInterval(NEVER));
+
+        userService.getUserFromAuthentication(authentication(LOGIN, "first")).block();
+        userService.getUserFromAuthentication(authentication(LOGIN, "latest")).block();
+        userService.getUserFromAuthentication(authentication("other_" + LOGIN, "doe")).block();
+        assertThat(userRepository.findOneByLogin(LOGIN).blockOptional()).isEmpty();
+
+        userService.stopWriteBehind();
+
+        User synced = userRepository.findOneWithAuthoritiesByLogin(LOGIN).block();
+        assertThat(synced.getLastName()).isEqualTo("latest");
+        assertThat(synced.getCreatedBy()).isEqualTo(LOGIN);
+        assertThat(synced.getLastModifiedBy()).isEqualTo(LOGIN);
+        assertThat(synced.getAuthorities())
+            .extracting(Authority::getName)
+            .containsExactlyInAnyOrder(AuthoritiesConstants.USER, NEW_AUTHORITY);
+        assertThat(userRepository.findOneByLogin("other_" + LOGIN).blockOptional()).isPresent();
+        assertThat(authorityRepository.findById(NEW_AUTHORITY).blockOptional()).isPresent();
+    }
+
+    @Test
+    void testFullQueueSynchronizesInline() {
+        userService = userService(userSync -> {
+            userSync.setFlushInterval(NEVER);
+            userSync.setMaxPending(0);
+        });
+
+        userService.getUserFromAuthentication(authentication(LOGIN, "doe")).block();
+
+        assertThat(userRepository.findOneByLogin(LOGIN).blockOptional()).isPresent();
+    }
+
+    @Test
+    void testFailedSynchronizationIsQueuedAgain() {
+        userService = userService(userSync -> userSync.setFlushInterval(NEVER));
+        User conflicting = new User();
+        conflicting.setId("conflicting-id");
+        conflicting.setLogin("conflicting_" + LOGIN);
+        conflicting.setEmail(LOGIN + "@localhost");
+        conflicting.setActivated(true);
+        conflicting.setCreatedBy(LOGIN);
+        userRepository.create(conflicting).block();
+
+        // the email is already taken, so that the first synchronization fails
+        userService.getUserFromAuthentication(authentication(LOGIN, "doe")).block();
+        userService.stopWriteBehind();
+        assertThat(userRepository.findOneByLogin(LOGIN).blockOptional()).isEmpty();
+
+        userRepository.deleteById(conflicting.getId()).block();
+        userService.getUserFromAuthentication(authentication(LOGIN, "doe")).block();
+        userService.stopWriteBehind();
+        assertThat(userRepository.findOneByLogin(LOGIN).blockOptional()).isPresent();
+    }
+
+    @Test
+    void testFailedAuthoritiesRollBackTheUser() {
+        UserRepository failingRepository = mock(UserRepository.class, AdditionalAnswers.delegatesTo(userRepository));
+        doAnswer(invocation -> Mono.error(new IllegalStateException("Could not link the authorities")))
+            .doAnswer(invocation -> userRepository.saveUserAuthorities(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(failingRepository)
+            .saveUserAuthorities(any(), anyCollection());
+        userService = userService(failingRepository, userSync -> userSync.setFlushInterval(NEVER));
+
+        // the user row is inserted before its authorities, and must not be left without them
+        userService.getUserFromAuthentication(authentication(LOGIN, "doe")).block();
+        userService.stopWriteBehind();
+        assertThat(userRepository.findOneByLogin(LOGIN).blockOptional()).isEmpty();
+
+        userService.getUserFromAuthentication(authentication(LOGIN, "doe")).block();
+        userService.stopWriteBehind();
+        User synced = userRepository.findOneWithAuthoritiesByLogin(LOGIN).block();
+        assertThat(synced).isNotNull();
+        assertThat(synced.getAuthorities())
+            .extracting(Authority::getName)
+            .containsExactlyInAnyOrder(AuthoritiesConstants.USER, NEW_AUTHORITY);
+    }
+
+    private UserService userService(Consumer<ApplicationProperties.UserSync> customizer) {
+        return userService(userRepository, customizer);
+    }
+
+    private UserService userService(UserRepository repository, Consumer<ApplicationProperties.UserSync> customizer) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getUserSync().setWriteBehind(true);
+        customizer.accept(applicationProperties.getUserSync());
+        return new UserService(
+            repository,
+            authorityRepository,
+            authorityRegistry,
+            countProvider,
+            transactionalOperator,
+            applicationProperties
+        );
+    }
+
+    private static JwtAuthenticationToken authentication(String login, String lastName) {
+        Jwt jwt = Jwt.withTokenValue("token")
+            .header("alg", "none")
+            .subject(login)
+            .claim("preferred_username", login)
+            .claim("email", login + "@localhost")
+            .claim("family_name", lastName)
+            .build();
+        return new JwtAuthenticationToken(
+            jwt,
+            List.of(new SimpleGrantedAuthority(AuthoritiesConstants.USER), new SimpleGrantedAuthority(NEW_AUTHORITY))
+        );
+    }
+}
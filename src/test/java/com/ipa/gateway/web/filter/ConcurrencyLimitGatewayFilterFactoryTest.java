@@ -0,0 +1,164 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+/**
+ * Test class for the {@link ConcurrencyLimitGatewayFilterFactory}, with a stub service answering the proxied requests.
+ */
+class ConcurrencyLimitGatewayFilterFactoryTest {
+
+    private MeterRegistry meterRegistry;
+
+    private ApplicationProperties applicationProperties;
+
+    private ApplicationProperties.Gateway.Limits limits;
+
+    private GatewayFilter filter;
+
+    private HttpStatus status;
+
+    private Sinks.Empty<Void> pending;
+
+    @BeforeEach
+    void init() {
+        applicationProperties = new ApplicationProperties();
+        limits = applicationProperties.getGateway().getServiceLimits().getDefaults();
+        limits.setMaxConcurrentCalls(4);
+        limits.setInitialLimit(2);
+        limits.setMinLimit(1);
+        limits.setBackoffRatio(0.5);
+        createFilter();
+        status = HttpStatus.OK;
+        pending = null;
+    }
+
+    @Test
+    void testRequestsBeyondTheLimitAreRejected() {
+        pending = Sinks.empty();
+        filter.filter(exchange(), this::service).subscribe();
+        filter.filter(exchange(), this::service).subscribe();
+
+        MockServerWebExchange rejected = exchange();
+        filter.filter(rejected, this::service).block(Duration.ofSeconds(1));
+
+        assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(gauge("in.flight")).isEqualTo(2);
+        assertThat(meterRegistry.counter("gateway.concurrency.rejected", "service", "books", "reason", "limit").count()).isEqualTo(1);
+
+        pending.tryEmitEmpty();
+        assertThat(gauge("in.flight")).isZero();
+    }
+
+    @Test
+    void testLimitGrowsWhileInUse() {
+        pending = Sinks.empty();
+        filter.filter(exchange(), this::service).subscribe();
+        filter.filter(exchange(), this::service).subscribe();
+
+        pending.tryEmitEmpty();
+
+        // the first completion finds the limit in use, the second one not any more
+        assertThat(gauge("limit")).isEqualTo(3);
+    }
+
+    @Test
+    void testLimitShrinksWhenTheServiceIsOverloaded() {
+        status = HttpStatus.SERVICE_UNAVAILABLE;
+
+        filter.filter(exchange(), this::service).block();
+
+        assertThat(gauge("limit")).isEqualTo(1);
+    }
+
+    @Test
+    void testBodyStreamingIsNotLatency() {
+        limits.setSlowCallThreshold(Duration.ofMillis(50));
+
+        filter
+            .filter(exchange(), exchange -> stream(exchange, MediaType.APPLICATION_OCTET_STREAM, Mono.delay(Duration.ofMillis(200)).then()))
+            .block(Duration.ofSeconds(5));
+
+        assertThat(gauge("limit")).isEqualTo(3);
+    }
+
+    @Test
+    void testEventStreamReleasesItsPermitOnceCommitted() {
+        limits.setSlowCallThreshold(Duration.ofMillis(50));
+        Sinks.Empty<Void> events = Sinks.empty();
+
+        filter.filter(exchange(), exchange -> stream(exchange, MediaType.TEXT_EVENT_STREAM, events.asMono())).subscribe();
+
+        assertThat(gauge("in.flight")).isZero();
+        events.tryEmitEmpty();
+        assertThat(gauge("in.flight")).isZero();
+        assertThat(gauge("limit")).isEqualTo(2);
+    }
+
+    @Test
+    void testBulkheadWithoutAdaptiveLimit() {
+        limits.setAdaptive(false);
+        createFilter();
+        status = HttpStatus.SERVICE_UNAVAILABLE;
+
+        filter.filter(exchange(), this::service).block();
+
+        assertThat(gauge("limit")).isEqualTo(4);
+    }
+
+    private void createFilter() {
+        meterRegistry = new SimpleMeterRegistry();
+        ConcurrencyLimitGatewayFilterFactory.Config config = new ConcurrencyLimitGatewayFilterFactory.Config();
+        config.setName("BOOKS");
+        filter = new ConcurrencyLimitGatewayFilterFactory(applicationProperties, meterRegistry).apply(config);
+    }
+
+    private MockServerWebExchange exchange() {
+        return MockServerWebExchange.from(MockServerHttpRequest.get("/services/books/api/books"));
+    }
+
+    /**
+     * Stub of the proxied service, answering with the current status once {@code pending} is emitted.
+     */
+    private Mono<Void> service(ServerWebExchange exchange) {
+        Mono<Void> answered = pending == null ? Mono.empty() : pending.asMono();
+        return answered.then(Mono.fromRunnable(() -> exchange.getResponse().setStatusCode(status)));
+    }
+
+    /**
+     * Stub of the proxied service, committing its response at once and streaming the rest of its body once {@code rest}
+     * completes.
+     */
+    private static Mono<Void> stream(ServerWebExchange exchange, MediaType contentType, Mono<Void> rest) {
+        exchange.getResponse().getHeaders().setContentType(contentType);
+        DataBufferFactory bufferFactory = exchange.getResponse().bufferFactory();
+        return exchange
+            .getResponse()
+            .writeWith(
+                Flux.concat(
+                    Mono.fromSupplier(() -> bufferFactory.wrap(new byte[] { 1 })),
+                    rest.then(Mono.fromSupplier(() -> bufferFactory.wrap(new byte[] { 2 })))
+                )
+            );
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get(ConcurrencyLimitGatewayFilterFactory.METRIC_PREFIX + name).tag("service", "books").gauge().value();
+    }
+}
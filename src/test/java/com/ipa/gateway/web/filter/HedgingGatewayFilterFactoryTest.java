@@ -0,0 +1,244 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+/**
+ * Test class for the {@link HedgingGatewayFilterFactory}, against stub instances of a service.
+ */
+class HedgingGatewayFilterFactoryTest {
+
+    private static final Route ROUTE = Route.async().id("books").uri(URI.create("lb://books")).predicate(exchange -> true).build();
+
+    private final AtomicInteger slowRequests = new AtomicInteger();
+
+    private final AtomicInteger fastRequests = new AtomicInteger();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ApplicationProperties applicationProperties = new ApplicationProperties();
+
+    private final ReactiveDiscoveryClient discoveryClient = mock(ReactiveDiscoveryClient.class);
+
+    private final InstanceStatisticsFilter statistics = new InstanceStatisticsFilter(applicationProperties);
+
+    private DisposableServer slow;
+
+    private DisposableServer fast;
+
+    private ServiceRoutingFilter serviceRoutingFilter;
+
+    @BeforeEach
+    void init() {
+        slow = stub(slowRequests, "slow", Duration.ofMillis(500));
+        fast = stub(fastRequests, "fast", Duration.ZERO);
+        when(discoveryClient.getInstances("books")).thenReturn(Flux.just(instance(slow.port()), instance(fast.port())));
+        HttpClientProperties properties = new HttpClientProperties();
+        serviceRoutingFilter = ServiceRoutingFilterTest.createFilter(HttpClient.create(), properties, applicationProperties);
+        applicationProperties.getGateway().getHedging().setPercentile(0);
+        applicationProperties.getGateway().getHedging().setDelay(Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void dispose() {
+        serviceRoutingFilter.dispose();
+        slow.disposeNow();
+        fast.disposeNow();
+    }
+
+    @Test
+    void testSlowInstanceIsHedged() {
+        MockServerWebExchange exchange = send(slow.port());
+
+        assertThat(exchange.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("fast");
+        assertThat(slowRequests.get()).isEqualTo(1);
+        assertThat(fastRequests.get()).isEqualTo(1);
+        assertThat(hedges("won")).isEqualTo(1);
+    }
+
+    @Test
+    void testFastInstanceIsNotHedged() {
+        MockServerWebExchange exchange = send(fast.port());
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("fast");
+        assertThat(slowRequests.get()).isZero();
+    }
+
+    @Test
+    void testHedgingIsBoundedByTheRetryBudget() {
+        applicationProperties.getGateway().getHedging().getRetryBudget().setRatio(0);
+        applicationProperties.getGateway().getHedging().getRetryBudget().setMinRetriesPerSecond(0);
+
+        MockServerWebExchange exchange = send(slow.port());
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("slow");
+        assertThat(fastRequests.get()).isZero();
+        assertThat(hedges("denied")).isEqualTo(1);
+    }
+
+    @Test
+    void testFailedInstanceIsRetriedAtOnce() {
+        DisposableServer down = stub(new AtomicInteger(), "down", Duration.ZERO);
+        down.disposeNow();
+        applicationProperties.getGateway().getHedging().setDelay(Duration.ofSeconds(10));
+        when(discoveryClient.getInstances("books")).thenReturn(Flux.just(instance(down.port()), instance(fast.port())));
+
+        long start = System.nanoTime();
+        MockServerWebExchange exchange = send(down.port());
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("fast");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void testResponseTimeoutIsAGatewayTimeout() {
+        applicationProperties.getGateway().getServicePools().getDefaults().setResponseTimeout(Duration.ofMillis(100));
+        when(discoveryClient.getInstances("books")).thenReturn(Flux.just(instance(slow.port())));
+
+        assertThatThrownBy(() -> filter().filter(exchange(slow.port()), e -> Mono.empty()).block(Duration.ofSeconds(10)))
+            .isInstanceOfSatisfying(ResponseStatusException.class, e ->
+                assertThat(e.getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT)
+            );
+    }
+
+    @Test
+    void testLargeResponseIsStreamedOnce() {
+        AtomicInteger largeRequests = new AtomicInteger();
+        String body = "books".repeat(1024 * 1024);
+        DisposableServer large = stub(largeRequests, body, Duration.ZERO);
+        try {
+            MockServerWebExchange exchange = send(large.port());
+
+            assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo(body);
+            assertThat(largeRequests.get()).isEqualTo(1);
+            assertThat(slowRequests.get() + fastRequests.get()).isZero();
+        } finally {
+            large.disposeNow();
+        }
+    }
+
+    @Test
+    void testHedgedRequestIsObservedAgainstItsInstance() {
+        send(slow.port());
+
+        assertThat(statistics.of(instance(fast.port())).latency()).isPositive();
+        assertThat(statistics.of(instance(fast.port())).inFlight()).isZero();
+        // the request which lost the race was cancelled, without being credited with the latency of the other one
+        assertThat(statistics.of(instance(slow.port())).latency()).isZero();
+        assertThat(statistics.of(instance(slow.port())).inFlight()).isZero();
+    }
+
+    @Test
+    void testEventStreamIsNotHedged() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(
+            MockServerHttpRequest.get("/api/books").accept(MediaType.TEXT_EVENT_STREAM)
+        );
+        exchange.getAttributes().putAll(exchange(slow.port()).getAttributes());
+        AtomicInteger chained = new AtomicInteger();
+
+        filter().filter(exchange, e -> Mono.fromRunnable(chained::incrementAndGet)).block(Duration.ofSeconds(10));
+
+        assertThat(chained.get()).isEqualTo(1);
+        assertThat(slowRequests.get()).isZero();
+    }
+
+    @Test
+    void testOtherMethodsAreNotHedged() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/books"));
+        AtomicInteger chained = new AtomicInteger();
+
+        filter().filter(exchange, e -> Mono.fromRunnable(chained::incrementAndGet)).block();
+
+        assertThat(chained.get()).isEqualTo(1);
+        assertThat(ServerWebExchangeUtils.isAlreadyRouted(exchange)).isFalse();
+    }
+
+    /**
+     * Sends a request through the filter, the body of the response kept being streamed by the write response filter
+     * of the gateway.
+     */
+    private MockServerWebExchange send(int port) {
+        MockServerWebExchange exchange = exchange(port);
+        GatewayFilter filter = filter();
+        new NettyWriteResponseFilter(List.of())
+            .filter(exchange, e -> filter.filter(e, routed -> Mono.empty()))
+            .block(Duration.ofSeconds(10));
+        assertThat(ServerWebExchangeUtils.isAlreadyRouted(exchange)).isTrue();
+        return exchange;
+    }
+
+    private static MockServerWebExchange exchange(int port) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/books"));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+        URI url = URI.create("http://localhost:" + port + "/api/books");
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR, url);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR, new DefaultResponse(instance(port)));
+        return exchange;
+    }
+
+    @SuppressWarnings("unchecked")
+    private GatewayFilter filter() {
+        HedgingGatewayFilterFactory factory = new HedgingGatewayFilterFactory(
+            applicationProperties,
+            serviceRoutingFilter,
+            discoveryClient,
+            mock(ObjectProvider.class),
+            statistics,
+            meterRegistry
+        );
+        return factory.apply(new HedgingGatewayFilterFactory.Config());
+    }
+
+    private double hedges(String result) {
+        return meterRegistry.counter(HedgingGatewayFilterFactory.METRIC_NAME, "service", "books", "result", result).count();
+    }
+
+    private static DisposableServer stub(AtomicInteger requests, String body, Duration latency) {
+        return HttpServer.create()
+            .host("localhost")
+            .port(0)
+            .handle((request, response) -> {
+                requests.incrementAndGet();
+                // the headers are delayed too, the race being decided on them
+                return Mono.delay(latency).then(response.sendString(Mono.just(body)).then());
+            })
+            .bindNow();
+    }
+
+    private static ServiceInstance instance(int port) {
+        return new DefaultServiceInstance("books-" + port, "books", "localhost", port, false);
+    }
+}
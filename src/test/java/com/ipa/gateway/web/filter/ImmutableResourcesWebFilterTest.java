@@ -0,0 +1,48 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.resource.ResourceWebHandler;
+
+/**
+ * Test class for the {@link ImmutableResourcesWebFilter}.
+ */
+class ImmutableResourcesWebFilterTest {
+
+    private final ImmutableResourcesWebFilter filter = new ImmutableResourcesWebFilter();
+
+    @Test
+    void testContentHashedNames() {
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/main.3f2a1c9e.js")).isTrue();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/592.0b1c2d3e.chunk.js")).isTrue();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/content/main.0123456789abcdef0123.css")).isTrue();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/index.html")).isFalse();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/service-worker.js")).isFalse();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/content/images/logo-jhipster.png")).isFalse();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/app/3f2a1c9e.js")).isFalse();
+        assertThat(ImmutableResourcesWebFilter.isContentHashed("/deadbeef.cafebabe/main")).isFalse();
+    }
+
+    @Test
+    void testResourcesAreImmutable() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/main.3f2a1c9e.js"));
+        exchange.getAttributes().put(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, new ResourceWebHandler());
+
+        filter.filter(exchange, e -> e.getResponse().setComplete()).block();
+
+        assertThat(exchange.getResponse().getHeaders().getCacheControl()).isEqualTo("max-age=31536000, public, immutable");
+    }
+
+    @Test
+    void testProxiedResponsesAreLeftAlone() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/services/books/main.3f2a1c9e.js"));
+
+        filter.filter(exchange, e -> e.getResponse().setComplete()).block();
+
+        assertThat(exchange.getResponse().getHeaders().getCacheControl()).isNull();
+    }
+}
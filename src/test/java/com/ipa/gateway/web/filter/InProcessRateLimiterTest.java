@@ -0,0 +1,84 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.ratelimit.RateLimiter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link InProcessRateLimiter}, on a virtual clock.
+ */
+class InProcessRateLimiterTest {
+
+    private long now;
+
+    private InProcessRateLimiter rateLimiter;
+
+    @BeforeEach
+    void init() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getGateway().getRateLimit().setReplenishRate(10);
+        applicationProperties.getGateway().getRateLimit().setBurstCapacity(5);
+        now = 0;
+        rateLimiter = new InProcessRateLimiter(applicationProperties, null, () -> now);
+    }
+
+    @Test
+    void testBurstThenReplenish() {
+        for (int i = 4; i >= 0; i--) {
+            RateLimiter.Response response = rateLimiter.isAllowed("books", "user:admin").block();
+            assertThat(response.isAllowed()).isTrue();
+            assertThat(response.getHeaders()).containsEntry(InProcessRateLimiter.REMAINING_HEADER, String.valueOf(i));
+        }
+        assertThat(rateLimiter.isAllowed("books", "user:admin").block().isAllowed()).isFalse();
+
+        now += Duration.ofMillis(100).toNanos();
+
+        assertThat(rateLimiter.isAllowed("books", "user:admin").block().isAllowed()).isTrue();
+        assertThat(rateLimiter.isAllowed("books", "user:admin").block().isAllowed()).isFalse();
+    }
+
+    @Test
+    void testBucketsAreKeyedByRouteAndId() {
+        for (int i = 0; i < 5; i++) {
+            rateLimiter.isAllowed("books", "user:admin").block();
+        }
+
+        assertThat(rateLimiter.isAllowed("books", "user:user").block().isAllowed()).isTrue();
+        assertThat(rateLimiter.isAllowed("authors", "user:admin").block().isAllowed()).isTrue();
+    }
+
+    @Test
+    void testRouteConfig() {
+        InProcessRateLimiter.Config config = new InProcessRateLimiter.Config().setReplenishRate(1).setBurstCapacity(10);
+        rateLimiter.getConfig().put("books", config.setRequestedTokens(4));
+
+        assertThat(rateLimiter.isAllowed("books", "user:admin").block().isAllowed()).isTrue();
+        assertThat(rateLimiter.isAllowed("books", "user:admin").block().isAllowed()).isTrue();
+        assertThat(rateLimiter.isAllowed("books", "user:admin").block().isAllowed()).isFalse();
+    }
+
+    @Test
+    void testApiRequestsBeyondTheLimitAreRejected() {
+        RateLimitWebFilter filter = new RateLimitWebFilter(rateLimiter, exchange -> Mono.just("ip:127.0.0.1"));
+        for (int i = 0; i < 5; i++) {
+            filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/api/books")), exchange -> Mono.empty()).block();
+        }
+
+        MockServerWebExchange rejected = MockServerWebExchange.from(MockServerHttpRequest.get("/api/books"));
+        filter.filter(rejected, exchange -> Mono.empty()).block();
+        MockServerWebExchange other = MockServerWebExchange.from(MockServerHttpRequest.get("/management/health"));
+        filter.filter(other, exchange -> Mono.empty()).block();
+
+        assertThat(rejected.getResponse().getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(rejected.getResponse().getHeaders().getFirst(InProcessRateLimiter.REMAINING_HEADER)).isEqualTo("0");
+        assertThat(other.getResponse().getStatusCode()).isNull();
+    }
+}
@@ -0,0 +1,105 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link InstanceStatisticsFilter}, on a virtual clock.
+ */
+class InstanceStatisticsFilterTest {
+
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+
+    private static final ServiceInstance BOOKS = new DefaultServiceInstance("books-1", "books", "books-1", 8081, false);
+
+    private long now;
+
+    private InstanceStatisticsFilter filter;
+
+    @BeforeEach
+    void init() {
+        now = 0;
+        filter = new InstanceStatisticsFilter(new ApplicationProperties(), () -> now);
+    }
+
+    @Test
+    void testLatencyIsObservedUntilTheResponseIsCommitted() {
+        filter.filter(exchange(), exchange -> stream(exchange, 50 * MILLIS, Duration.ofMinutes(10).toNanos())).block();
+
+        now = 50 * MILLIS;
+        assertThat(filter.of(BOOKS).latency()).isEqualTo(50 * MILLIS);
+        assertThat(filter.of(BOOKS).inFlight()).isZero();
+    }
+
+    @Test
+    void testStreamIsNotInFlightOnceCommitted() {
+        int[] inFlight = new int[1];
+
+        filter
+            .filter(exchange(), exchange ->
+                stream(exchange, MILLIS, 0).then(Mono.fromRunnable(() -> inFlight[0] = filter.of(BOOKS).inFlight()))
+            )
+            .block();
+
+        assertThat(inFlight[0]).isZero();
+    }
+
+    @Test
+    void testResponseNotCommittedIsObservedWhenTheExchangeEnds() {
+        filter
+            .filter(exchange(), exchange -> {
+                now += 20 * MILLIS;
+                exchange.getResponse().setStatusCode(HttpStatus.BAD_GATEWAY);
+                return Mono.empty();
+            })
+            .block();
+
+        assertThat(filter.of(BOOKS).latency()).isEqualTo(20 * MILLIS);
+        assertThat(filter.of(BOOKS).inFlight()).isZero();
+    }
+
+    private static MockServerWebExchange exchange() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/services/books/api/books"));
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_LOADBALANCER_RESPONSE_ATTR, new DefaultResponse(BOOKS));
+        return exchange;
+    }
+
+    /**
+     * Stub of the proxied service, answering after {@code latency}, then streaming its body for {@code streaming}.
+     */
+    private Mono<Void> stream(ServerWebExchange exchange, long latency, long streaming) {
+        now += latency;
+        exchange.getResponse().setStatusCode(HttpStatus.OK);
+        return exchange
+            .getResponse()
+            .writeWith(
+                Flux.concat(
+                    Mono.fromSupplier(() -> buffer(exchange, "data: 1\n\n")),
+                    Mono.fromSupplier(() -> {
+                        now += streaming;
+                        return buffer(exchange, "data: 2\n\n");
+                    })
+                )
+            );
+    }
+
+    private static DataBuffer buffer(ServerWebExchange exchange, String data) {
+        return exchange.getResponse().bufferFactory().wrap(data.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,126 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import com.ipa.gateway.config.ApplicationProperties.Gateway.LoadBalancer.Strategy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+
+/**
+ * Test class for the {@link LatencyAwareLoadBalancer}, with a harness simulating stub instances on a virtual clock.
+ */
+class LatencyAwareLoadBalancerTest {
+
+    private static final long MILLIS = Duration.ofMillis(1).toNanos();
+
+    private static final ServiceInstance BOOKS_1 = new DefaultServiceInstance("books-1", "books", "books-1", 8081, false);
+
+    private static final ServiceInstance BOOKS_2 = new DefaultServiceInstance("books-2", "books", "books-2", 8081, false);
+
+    /**
+     * Stub instance pausing for 200 ms every second, like a garbage collection.
+     */
+    private static final ServiceInstance PAUSING = new DefaultServiceInstance("books-3", "books", "books-3", 8081, false);
+
+    private static final List<ServiceInstance> INSTANCES = List.of(BOOKS_1, BOOKS_2, PAUSING);
+
+    private long now;
+
+    private InstanceStatisticsFilter statistics;
+
+    @BeforeEach
+    void init() {
+        now = 0;
+        statistics = new InstanceStatisticsFilter(new ApplicationProperties(), () -> now);
+    }
+
+    @Test
+    void testTailLatencyIsLowerThanRoundRobin() {
+        long roundRobin = p99(Strategy.ROUND_ROBIN);
+        init();
+        long peakEwma = p99(Strategy.PEAK_EWMA);
+        init();
+        long leastInFlight = p99(Strategy.LEAST_IN_FLIGHT);
+
+        String results = "p99 round robin %d ms, peak EWMA %d ms, least in flight %d ms".formatted(roundRobin, peakEwma, leastInFlight);
+        assertThat(peakEwma).as(results).isLessThan(roundRobin / 2);
+        assertThat(leastInFlight).as(results).isLessThan(roundRobin);
+    }
+
+    @Test
+    void testFailingInstanceIsEjected() {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(Strategy.PEAK_EWMA);
+        for (int i = 0; i < 5; i++) {
+            statistics.of(PAUSING).complete(statistics.of(PAUSING).start(), true);
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(loadBalancer.choose(INSTANCES).getServer()).isNotEqualTo(PAUSING);
+        }
+        assertThat(loadBalancer.choose(List.of(PAUSING)).getServer()).isEqualTo(PAUSING);
+
+        now += Duration.ofSeconds(30).toNanos();
+        assertThat(statistics.of(PAUSING).isEjected()).isFalse();
+    }
+
+    @Test
+    void testNoInstance() {
+        assertThat(loadBalancer(Strategy.PEAK_EWMA).choose(List.of()).hasServer()).isFalse();
+    }
+
+    /**
+     * Sends a request every millisecond for 20 seconds, to instances answering in 10 ms.
+     *
+     * @return the 99th percentile of the latency, in milliseconds.
+     */
+    private long p99(Strategy strategy) {
+        LatencyAwareLoadBalancer loadBalancer = loadBalancer(strategy);
+        PriorityQueue<long[]> inFlight = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        List<ServiceInstance> chosen = new ArrayList<>();
+        List<Long> latencies = new ArrayList<>();
+        for (int request = 0; request < 20_000; request++) {
+            long arrival = request * MILLIS;
+            while (!inFlight.isEmpty() && inFlight.peek()[0] <= arrival) {
+                long[] completed = inFlight.poll();
+                now = completed[0];
+                statistics.of(chosen.get((int) completed[2])).complete(completed[1], false);
+            }
+            now = arrival;
+            ServiceInstance instance = strategy == Strategy.ROUND_ROBIN
+                ? INSTANCES.get(request % INSTANCES.size())
+                : loadBalancer.choose(INSTANCES).getServer();
+            long start = statistics.of(instance).start();
+            long end = answeredAt(instance, arrival);
+            chosen.add(instance);
+            inFlight.add(new long[] { end, start, request });
+            latencies.add((end - arrival) / MILLIS);
+        }
+        Collections.sort(latencies);
+        return latencies.get(latencies.size() * 99 / 100);
+    }
+
+    private static long answeredAt(ServiceInstance instance, long arrival) {
+        long answered = arrival + 10 * MILLIS;
+        if (instance == PAUSING) {
+            long second = Duration.ofSeconds(1).toNanos();
+            long pauseStart = (answered / second) * second + 500 * MILLIS;
+            long pauseEnd = pauseStart + 200 * MILLIS;
+            if (answered >= pauseStart && arrival < pauseEnd) {
+                answered = pauseEnd + 10 * MILLIS;
+            }
+        }
+        return answered;
+    }
+
+    private LatencyAwareLoadBalancer loadBalancer(Strategy strategy) {
+        return new LatencyAwareLoadBalancer(null, "books", statistics, strategy);
+    }
+}
@@ -0,0 +1,157 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the {@link ResponseCacheGatewayFilterFactory}, with a stub service answering the proxied requests.
+ */
+class ResponseCacheGatewayFilterFactoryTest {
+
+    private static final String BOOKS_URI = "/services/books/api/books";
+
+    private static final String USERS_URI = "/services/books/api/users";
+
+    private static final Route ROUTE = Route.async().id("books").uri(URI.create("http://books")).predicate(exchange -> true).build();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private MeterRegistry meterRegistry;
+
+    private GatewayFilter filter;
+
+    private String cacheControl;
+
+    private String vary;
+
+    private Duration latency;
+
+    @BeforeEach
+    void init() {
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new ResponseCacheGatewayFilterFactory(new ApplicationProperties(), meterRegistry).apply(
+            new ResponseCacheGatewayFilterFactory.Config()
+        );
+        cacheControl = "max-age=60";
+        vary = null;
+        latency = Duration.ZERO;
+    }
+
+    @Test
+    void testCacheableResponseIsServedFromMemory() {
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI))).isEqualTo("response 1");
+
+        MockServerWebExchange exchange = exchange(MockServerHttpRequest.get(BOOKS_URI));
+        filter.filter(exchange, this::service).block();
+
+        assertThat(exchange.getResponse().getBodyAsString().block()).isEqualTo("response 1");
+        assertThat(exchange.getResponse().getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+        assertThat(calls).hasValue(1);
+        assertThat(count("hit")).isEqualTo(1);
+        assertThat(count("miss")).isEqualTo(1);
+    }
+
+    @Test
+    void testNoStoreResponseIsNotCached() {
+        cacheControl = "no-store";
+
+        get(MockServerHttpRequest.get(BOOKS_URI));
+
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI))).isEqualTo("response 2");
+    }
+
+    @Test
+    void testRequestNoCacheGoesToService() {
+        get(MockServerHttpRequest.get(BOOKS_URI));
+
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI).header(HttpHeaders.CACHE_CONTROL, "no-cache"))).isEqualTo("response 2");
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI))).isEqualTo("response 2");
+    }
+
+    @Test
+    void testVaryHeaderSelectsTheResponse() {
+        vary = HttpHeaders.ACCEPT_LANGUAGE;
+
+        get(MockServerHttpRequest.get(BOOKS_URI).header(HttpHeaders.ACCEPT_LANGUAGE, "en"));
+
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI).header(HttpHeaders.ACCEPT_LANGUAGE, "fr"))).isEqualTo("response 2");
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI).header(HttpHeaders.ACCEPT_LANGUAGE, "fr"))).isEqualTo("response 2");
+    }
+
+    @Test
+    void testAuthenticatedRequestOnlyStoresPublicResponses() {
+        get(MockServerHttpRequest.get(BOOKS_URI).header(HttpHeaders.AUTHORIZATION, "Bearer token"));
+
+        assertThat(get(MockServerHttpRequest.get(BOOKS_URI))).isEqualTo("response 2");
+
+        cacheControl = "public, max-age=60";
+        get(MockServerHttpRequest.get(USERS_URI).header(HttpHeaders.AUTHORIZATION, "Bearer token"));
+
+        assertThat(get(MockServerHttpRequest.get(USERS_URI))).isEqualTo("response 3");
+    }
+
+    @Test
+    void testConcurrentMissesAreCoalesced() {
+        latency = Duration.ofMillis(200);
+
+        Flux.range(0, 5).flatMap(i -> filter.filter(exchange(MockServerHttpRequest.get(BOOKS_URI)), this::service)).blockLast();
+
+        assertThat(calls).hasValue(1);
+        assertThat(count("hit")).isEqualTo(4);
+    }
+
+    private String get(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = exchange(request);
+        filter.filter(exchange, this::service).block();
+        return exchange.getResponse().getBodyAsString().block();
+    }
+
+    private MockServerWebExchange exchange(MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR, ROUTE);
+        return exchange;
+    }
+
+    /**
+     * Stub of the proxied service, which numbers its responses.
+     */
+    private Mono<Void> service(ServerWebExchange exchange) {
+        return Mono.delay(latency).then(
+            Mono.defer(() -> {
+                ServerHttpResponse response = exchange.getResponse();
+                response.setStatusCode(HttpStatus.OK);
+                response.getHeaders().set(HttpHeaders.CACHE_CONTROL, cacheControl);
+                if (vary != null) {
+                    response.getHeaders().setVary(List.of(vary));
+                }
+                byte[] body = ("response " + calls.incrementAndGet()).getBytes(StandardCharsets.UTF_8);
+                return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+            })
+        );
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter(ResponseCacheGatewayFilterFactory.METRIC_NAME, "route", "books", "result", result).count();
+    }
+}
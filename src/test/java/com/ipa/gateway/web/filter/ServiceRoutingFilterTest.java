@@ -0,0 +1,120 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ipa.gateway.config.ApplicationProperties;
+import io.netty.channel.ChannelOption;
+import java.net.URI;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.cloud.gateway.config.HttpClientCustomizer;
+import org.springframework.cloud.gateway.config.HttpClientProperties;
+import org.springframework.cloud.gateway.config.HttpClientSslConfigurer;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.RouteMetadataUtils;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.netty.http.client.HttpClient;
+
+/**
+ * Test class for the {@link ServiceRoutingFilter}.
+ */
+class ServiceRoutingFilterTest {
+
+    private final HttpClient sharedHttpClient = HttpClient.create();
+
+    private final MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/services/books/api/books"));
+
+    private ServiceRoutingFilter filter;
+
+    @BeforeEach
+    void init() {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Gateway.Pool books = new ApplicationProperties.Gateway.Pool();
+        books.setMaxConnections(5);
+        applicationProperties.getGateway().getServicePools().getServices().put("books", books);
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxHeaderSize(DataSize.ofKilobytes(16));
+        filter = createFilter(sharedHttpClient, properties, applicationProperties, httpClient ->
+            httpClient.option(ChannelOption.SO_KEEPALIVE, true)
+        );
+    }
+
+    @AfterEach
+    void dispose() {
+        filter.dispose();
+    }
+
+    @Test
+    void testEachServiceHasItsOwnPool() {
+        HttpClient books = filter.getHttpClient(route("lb://books"), exchange);
+        HttpClient authors = filter.getHttpClient(route("lb://AUTHORS"), exchange);
+
+        assertThat(filter.getHttpClient(route("lb://books"), exchange)).isSameAs(books);
+        assertThat(books.configuration().connectionProvider().maxConnections()).isEqualTo(5);
+        assertThat(authors.configuration().connectionProvider().maxConnections()).isEqualTo(100);
+        assertThat(books.configuration().connectionProvider()).isNotSameAs(authors.configuration().connectionProvider());
+    }
+
+    @Test
+    void testServicesAreConfiguredLikeTheSharedClient() {
+        HttpClient books = filter.getHttpClient(route("lb://books"), exchange);
+
+        assertThat(books.configuration().decoder().maxHeaderSize()).isEqualTo(16 * 1024);
+        assertThat(books.configuration().options()).containsEntry(ChannelOption.SO_KEEPALIVE, true);
+    }
+
+    @Test
+    void testRouteConnectTimeout() {
+        Route route = Route.async()
+            .id("books")
+            .uri(URI.create("lb://books"))
+            .predicate(exchange -> true)
+            .metadata(RouteMetadataUtils.CONNECT_TIMEOUT_ATTR, 250)
+            .build();
+
+        assertThat(filter.getHttpClient(route, exchange).configuration().options())
+            .containsEntry(ChannelOption.CONNECT_TIMEOUT_MILLIS, 250);
+        assertThat(filter.getHttpClient(route("lb://books"), exchange).configuration().options())
+            .containsEntry(ChannelOption.CONNECT_TIMEOUT_MILLIS, 2000);
+    }
+
+    @Test
+    void testOtherRoutesUseTheSharedClient() {
+        assertThat(filter.getHttpClient(route("http://localhost:8081"), exchange)).isSameAs(sharedHttpClient);
+    }
+
+    @SuppressWarnings("unchecked")
+    static ServiceRoutingFilter createFilter(
+        HttpClient sharedHttpClient,
+        HttpClientProperties properties,
+        ApplicationProperties applicationProperties,
+        HttpClientCustomizer... customizers
+    ) {
+        HttpClientSslConfigurer sslConfigurer = mock(HttpClientSslConfigurer.class);
+        when(sslConfigurer.configureSsl(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        ObjectProvider<HttpClientCustomizer> customizersProvider = mock(ObjectProvider.class);
+        when(customizersProvider.orderedStream()).thenReturn(Stream.of(customizers));
+        return new ServiceRoutingFilter(
+            sharedHttpClient,
+            mock(ObjectProvider.class),
+            properties,
+            new ServerProperties(),
+            sslConfigurer,
+            customizersProvider,
+            applicationProperties
+        );
+    }
+
+    private static Route route(String uri) {
+        return Route.async().id(uri).uri(URI.create(uri)).predicate(exchange -> true).build();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ipa.gateway.web.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Test class for the path classification of the {@link SpaWebFilter}.
+ */
+class SpaWebFilterTest {
+
+    private static final List<String> PATHS = List.of(
+        "",
+        "/",
+        "/admin/users",
+        "/books/1/edit",
+        "/api",
+        "/api/books",
+        "/apix",
+        "/ap",
+        "/management/health",
+        "/v3/api-docs",
+        "/v3/api",
+        "/login",
+        "/oauth2/authorization/oidc",
+        "/services/books/api/books",
+        "/service",
+        "/app/main.3f2a1c.js",
+        "/favicon.ico",
+        "/books\n",
+        "/books\u2028",
+        "books",
+        "/."
+    );
+
+    private final SpaWebFilter filter = new SpaWebFilter();
+
+    @Test
+    void testClassificationMatchesThePrefixesAndPattern() {
+        for (String path : PATHS) {
+            assertThat(filter.forwardsToIndex(path)).as(path).isEqualTo(forwardsToIndexWithPattern(path));
+        }
+    }
+
+    @Test
+    void testFilterForwardsToIndex() {
+        assertThat(forwarded("/books/1").getRequest().getPath().value()).isEqualTo("/index.html");
+        assertThat(forwarded("/api/books").getRequest().getPath().value()).isEqualTo("/api/books");
+    }
+
+    private ServerWebExchange forwarded(String path) {
+        AtomicReference<ServerWebExchange> forwarded = new AtomicReference<>();
+        filter
+            .filter(MockServerWebExchange.from(MockServerHttpRequest.get(path)), exchange -> {
+                forwarded.set(exchange);
+                return Mono.empty();
+            })
+            .block();
+        return forwarded.get();
+    }
+
+    /**
+     * The classification made before by the filter.
+     */
+    private static boolean forwardsToIndexWithPattern(String path) {
+        return (
+            SpaWebFilter.SERVER_PREFIXES.stream().noneMatch(path::startsWith) && !path.contains(".") && path.matches("/(.*)")
+        );
+    }
+}
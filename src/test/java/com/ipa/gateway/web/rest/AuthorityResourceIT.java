@@ -11,6 +11,7 @@ import com.ipa.gateway.IntegrationTest;
 import com.ipa.gateway.domain.Authority;
 import com.ipa.gateway.repository.AuthorityRepository;
 import com.ipa.gateway.repository.EntityManager;
+import com.ipa.gateway.service.AuthorityRegistry;
 import java.time.Duration;
 import java.util.List;
 import java.util.UUID;
@@ -40,6 +41,9 @@ class AuthorityResourceIT {
     @Autowired
     private AuthorityRepository authorityRepository;
 
+    @Autowired
+    private AuthorityRegistry authorityRegistry;
+
     @Autowired
     private EntityManager em;
 
@@ -146,6 +150,7 @@ class AuthorityResourceIT {
         // Initialize the database
         authority.setName(UUID.randomUUID().toString());
         authorityRepository.save(authority).block();
+        authorityRegistry.invalidate();
 
         List<Authority> authorityList = webTestClient
             .get()
@@ -176,6 +181,7 @@ class AuthorityResourceIT {
         // Initialize the database
         authority.setName(UUID.randomUUID().toString());
         insertedAuthority = authorityRepository.save(authority).block();
+        authorityRegistry.invalidate();
 
         // Get all the authorityList
         webTestClient
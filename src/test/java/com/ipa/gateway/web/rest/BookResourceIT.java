@@ -3,6 +3,7 @@ package com.ipa.gateway.web.rest;
 import static com.ipa.gateway.domain.BookAsserts.*;
 import static com.ipa.gateway.web.rest.TestUtil.createUpdateProxyForBean;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.is;
 import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.csrf;
@@ -12,8 +13,12 @@ import com.ipa.gateway.IntegrationTest;
 import com.ipa.gateway.domain.Book;
 import com.ipa.gateway.repository.BookRepository;
 import com.ipa.gateway.repository.EntityManager;
+import com.ipa.gateway.repository.Keyset;
 import com.ipa.gateway.service.dto.BookDTO;
+import com.ipa.gateway.service.dto.BulkItemResultDTO;
 import com.ipa.gateway.service.mapper.BookMapper;
+import java.time.Duration;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.AfterEach;
@@ -21,7 +26,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
@@ -187,6 +197,117 @@ class BookResourceIT {
             .value(hasItem(DEFAULT_PRICE.intValue()));
     }
 
+    @Test
+    void getAllBooksByKeyset() {
+        // Initialize the database
+        Book first = bookRepository.save(createEntity()).block();
+        Book second = bookRepository.save(createEntity()).block();
+        Book third = bookRepository.save(createEntity()).block();
+        String secondCursor = Keyset.cursor(second.getId(), second.getId());
+        String thirdCursor = Keyset.cursor(third.getId(), third.getId());
+
+        // Get the first page
+        var firstPage = webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?after=&size=2&sort=id,asc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .doesNotExist("X-Total-Count")
+            .expectBodyList(BookDTO.class)
+            .returnResult();
+        assertThat(firstPage.getResponseBody()).extracting(BookDTO::getId).containsExactly(first.getId(), second.getId());
+        assertThat(firstPage.getResponseHeaders().getFirst(HttpHeaders.LINK)).contains("after=" + secondCursor + ">; rel=\"next\"");
+
+        // Get the next page
+        var nextPage = webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?after=" + secondCursor + "&size=2&sort=id,asc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(BookDTO.class)
+            .returnResult();
+        assertThat(nextPage.getResponseBody()).extracting(BookDTO::getId).containsExactly(third.getId());
+        assertThat(nextPage.getResponseHeaders().getFirst(HttpHeaders.LINK))
+            .doesNotContain("rel=\"next\"")
+            .contains("before=" + thirdCursor + ">; rel=\"prev\"");
+
+        // Go back to the first page
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?before=" + thirdCursor + "&size=2&sort=id,asc")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[*].id")
+            .value(contains(first.getId().intValue(), second.getId().intValue()));
+
+    }
+
+    @Test
+    void getAllBooksWithInvalidCursor() {
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?after=not-a-cursor")
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isBadRequest();
+    }
+
+    @Test
+    void getAllBooksAsStream() {
+        // Initialize the database
+        Book first = bookRepository.save(createEntity()).block();
+        Book second = bookRepository.save(createEntity()).block();
+
+        List<BookDTO> books = webTestClient
+            .get()
+            .uri(ENTITY_API_URL + "?afterId=" + (first.getId() - 1))
+            .accept(MediaType.APPLICATION_NDJSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectHeader()
+            .contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+            .returnResult(BookDTO.class)
+            .getResponseBody()
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertThat(books).extracting(BookDTO::getId).containsExactly(first.getId(), second.getId());
+        assertThat(books.get(0).getName()).isEqualTo(DEFAULT_NAME);
+    }
+
+    @Test
+    void getAllBooksAsEventsAfterLastEventId() {
+        // Initialize the database
+        Book first = bookRepository.save(createEntity()).block();
+        Book second = bookRepository.save(createEntity()).block();
+
+        List<ServerSentEvent<BookDTO>> events = webTestClient
+            .get()
+            .uri(ENTITY_API_URL)
+            .accept(MediaType.TEXT_EVENT_STREAM)
+            .header("Last-Event-ID", first.getId().toString())
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(new ParameterizedTypeReference<ServerSentEvent<BookDTO>>() {})
+            .getResponseBody()
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(ServerSentEvent::id).containsExactly(second.getId().toString());
+        assertThat(events.get(0).data().getId()).isEqualTo(second.getId());
+    }
+
     @Test
     void getBook() {
         // Initialize the database
@@ -213,6 +334,36 @@ class BookResourceIT {
             .value(is(DEFAULT_PRICE.intValue()));
     }
 
+    @Test
+    void getBookNotModified() {
+        // Initialize the database
+        insertedBook = bookRepository.save(book).block();
+
+        String eTag = webTestClient
+            .get()
+            .uri(ENTITY_API_URL_ID, book.getId())
+            .accept(MediaType.APPLICATION_JSON)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(BookDTO.class)
+            .getResponseHeaders()
+            .getETag();
+        assertThat(eTag).isNotBlank();
+
+        // A repeated read with the same entity tag gets no body
+        webTestClient
+            .get()
+            .uri(ENTITY_API_URL_ID, book.getId())
+            .accept(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_NONE_MATCH, eTag)
+            .exchange()
+            .expectStatus()
+            .isNotModified()
+            .expectBody()
+            .isEmpty();
+    }
+
     @Test
     void getNonExistingBook() {
         // Get the book
@@ -251,6 +402,56 @@ class BookResourceIT {
         assertPersistedBookToMatchAllProperties(updatedBook);
     }
 
+    @Test
+    void putExistingBookWithIfMatch() throws Exception {
+        // Initialize the database
+        insertedBook = bookRepository.save(book).block();
+
+        String eTag = webTestClient
+            .get()
+            .uri(ENTITY_API_URL_ID, book.getId())
+            .exchange()
+            .returnResult(BookDTO.class)
+            .getResponseHeaders()
+            .getETag();
+
+        // Update the book
+        Book updatedBook = bookRepository.findById(book.getId()).block();
+        updatedBook.name(UPDATED_NAME).description(UPDATED_DESCRIPTION).price(UPDATED_PRICE);
+        BookDTO bookDTO = bookMapper.toDto(updatedBook);
+
+        String updatedETag = webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID, bookDTO.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .bodyValue(om.writeValueAsBytes(bookDTO))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .returnResult(BookDTO.class)
+            .getResponseHeaders()
+            .getETag();
+        assertThat(updatedETag).isNotBlank().isNotEqualTo(eTag);
+
+        // Validate the Book in the database
+        assertPersistedBookToMatchAllProperties(updatedBook);
+
+        // The previous entity tag is now stale
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL_ID, bookDTO.getId())
+            .contentType(MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.IF_MATCH, eTag)
+            .bodyValue(om.writeValueAsBytes(bookMapper.toDto(book)))
+            .exchange()
+            .expectStatus()
+            .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // Validate the Book in the database
+        assertPersistedBookToMatchAllProperties(updatedBook);
+    }
+
     @Test
     void putNonExistingBook() throws Exception {
         long databaseSizeBeforeUpdate = getRepositoryCount();
@@ -259,7 +460,7 @@ class BookResourceIT {
         // Create the Book
         BookDTO bookDTO = bookMapper.toDto(book);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // The update statement matches no row
         webTestClient
             .put()
             .uri(ENTITY_API_URL_ID, bookDTO.getId())
@@ -267,7 +468,7 @@ class BookResourceIT {
             .bodyValue(om.writeValueAsBytes(bookDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Book in the database
         assertSameRepositoryCount(databaseSizeBeforeUpdate);
@@ -381,7 +582,7 @@ class BookResourceIT {
         // Create the Book
         BookDTO bookDTO = bookMapper.toDto(book);
 
-        // If the entity doesn't have an ID, it will throw BadRequestAlertException
+        // The update statement matches no row
         webTestClient
             .patch()
             .uri(ENTITY_API_URL_ID, bookDTO.getId())
@@ -389,7 +590,7 @@ class BookResourceIT {
             .bodyValue(om.writeValueAsBytes(bookDTO))
             .exchange()
             .expectStatus()
-            .isBadRequest();
+            .isNotFound();
 
         // Validate the Book in the database
         assertSameRepositoryCount(databaseSizeBeforeUpdate);
@@ -459,6 +660,69 @@ class BookResourceIT {
         assertDecrementedRepositoryCount(databaseSizeBeforeDelete);
     }
 
+    @Test
+    void createBooksInBulk() throws Exception {
+        long databaseSizeBeforeCreate = getRepositoryCount();
+        BookDTO existing = bookMapper.toDto(createEntity());
+        existing.setId(longCount.incrementAndGet());
+        String ndjson = om.writeValueAsString(bookMapper.toDto(createEntity())) + "\n" + om.writeValueAsString(existing) + "\n";
+
+        List<BulkItemResultDTO> results = webTestClient
+            .post()
+            .uri(ENTITY_API_URL + "/_bulk")
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .bodyValue(ndjson)
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBodyList(BulkItemResultDTO.class)
+            .returnResult()
+            .getResponseBody();
+
+        assertThat(results).extracting(BulkItemResultDTO::getStatus).containsExactly(201, 400);
+        assertThat(results.get(1).getError()).isEqualTo("idexists");
+        assertThat(bookRepository.findById(results.get(0).getId()).block()).isNotNull();
+        assertIncrementedRepositoryCount(databaseSizeBeforeCreate);
+    }
+
+    @Test
+    void updateAndDeleteBooksInBulk() throws Exception {
+        // Initialize the database
+        insertedBook = bookRepository.save(book).block();
+        BookDTO updated = bookMapper.toDto(book);
+        updated.setName(UPDATED_NAME);
+        BookDTO missing = bookMapper.toDto(createEntity());
+        missing.setId(longCount.incrementAndGet());
+
+        webTestClient
+            .put()
+            .uri(ENTITY_API_URL + "/_bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(om.writeValueAsBytes(List.of(updated, missing)))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[*].status")
+            .value(contains(200, 404));
+        assertThat(getPersistedBook(book).getName()).isEqualTo(UPDATED_NAME);
+
+        long databaseSizeBeforeDelete = getRepositoryCount();
+        webTestClient
+            .method(HttpMethod.DELETE)
+            .uri(ENTITY_API_URL + "/_bulk")
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(om.writeValueAsBytes(List.of(book.getId(), missing.getId())))
+            .exchange()
+            .expectStatus()
+            .isOk()
+            .expectBody()
+            .jsonPath("$.[*].status")
+            .value(contains(204, 404));
+        assertDecrementedRepositoryCount(databaseSizeBeforeDelete);
+        insertedBook = null;
+    }
+
     protected long getRepositoryCount() {
         return bookRepository.count().block();
     }
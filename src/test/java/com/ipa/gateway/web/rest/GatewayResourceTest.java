@@ -0,0 +1,77 @@
+package com.ipa.gateway.web.rest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.ipa.gateway.web.rest.vm.RouteVM;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.ReactiveDiscoveryClient;
+import org.springframework.cloud.client.discovery.event.HeartbeatEvent;
+import org.springframework.cloud.gateway.handler.predicate.PathRoutePredicateFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.route.RouteLocator;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+/**
+ * Test class for the {@link GatewayResource}.
+ */
+class GatewayResourceTest {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private GatewayResource gatewayResource;
+
+    private ServiceInstance instance;
+
+    @BeforeEach
+    void init() {
+        Route route = Route.async()
+            .id("ReactiveCompositeDiscoveryClient_BOOKS")
+            .uri(URI.create("lb://books"))
+            .predicate(new PathRoutePredicateFactory().apply(config -> config.setPatterns(List.of("/services/books/**"))))
+            .build();
+        RouteLocator routeLocator = () -> Flux.just(route);
+        ReactiveDiscoveryClient discoveryClient = mock(ReactiveDiscoveryClient.class);
+        when(discoveryClient.getInstances("books")).thenAnswer(invocation -> {
+            lookups.incrementAndGet();
+            return Flux.just(instance);
+        });
+        instance = new DefaultServiceInstance("books-1", "books", "localhost", 8081, false);
+        gatewayResource = new GatewayResource(routeLocator, discoveryClient);
+    }
+
+    @Test
+    void testRoutesAreServedFromMemory() {
+        ResponseEntity<List<RouteVM>> first = gatewayResource.activeRoutes().block();
+        gatewayResource.activeRoutes().block();
+
+        assertThat(first.getBody()).singleElement().satisfies(routeVM -> {
+            assertThat(routeVM.getServiceId()).isEqualTo("books");
+            assertThat(routeVM.getPath()).isEqualTo("/services/books/**");
+            assertThat(routeVM.getServiceInstances()).containsExactly(instance);
+        });
+        assertThat(lookups).hasValue(1);
+    }
+
+    @Test
+    void testHeartbeatChangeReloadsRoutes() {
+        gatewayResource.activeRoutes().block();
+        instance = new DefaultServiceInstance("books-2", "books", "localhost", 8082, false);
+
+        gatewayResource.onHeartbeat(new HeartbeatEvent(this, 1L));
+        gatewayResource.onHeartbeat(new HeartbeatEvent(this, 1L));
+
+        assertThat(gatewayResource.activeRoutes().block().getBody()).singleElement().satisfies(routeVM ->
+            assertThat(routeVM.getServiceInstances()).containsExactly(instance)
+        );
+        assertThat(lookups).hasValue(2);
+    }
+}
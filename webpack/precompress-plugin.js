@@ -0,0 +1,56 @@
+const { promisify } = require('util');
+const zlib = require('zlib');
+
+const gzip = promisify(zlib.gzip);
+const brotliCompress = promisify(zlib.brotliCompress);
+
+const NAME = 'PrecompressPlugin';
+
+/**
+ * Emits a Brotli (`.br`) and a gzip (`.gz`) variant next to each text asset, compressed once at build time with the
+ * highest levels, so that the server sends them as they are rather than compressing the assets on every request.
+ * The variants are only kept when they save enough bytes.
+ */
+module.exports = class PrecompressPlugin {
+  constructor({ test = /\.(js|css|html|json|svg|txt|map)$/, threshold = 1024, minRatio = 0.8 } = {}) {
+    this.test = test;
+    this.threshold = threshold;
+    this.minRatio = minRatio;
+  }
+
+  apply(compiler) {
+    const { Compilation, sources } = compiler.webpack;
+    compiler.hooks.thisCompilation.tap(NAME, compilation => {
+      compilation.hooks.processAssets.tapPromise(
+        // additionalAssets: also compress the assets emitted later by other plugins, such as the service worker
+        { name: NAME, stage: Compilation.PROCESS_ASSETS_STAGE_OPTIMIZE_TRANSFER, additionalAssets: true },
+        assets =>
+          Promise.all(
+            Object.keys(assets)
+              .filter(name => this.test.test(name) && !compilation.getAsset(`${name}.gz`))
+              .map(async name => {
+                const content = compilation.getAsset(name).source.buffer();
+                if (content.length < this.threshold) {
+                  return;
+                }
+                const [brotli, gzipped] = await Promise.all([
+                  brotliCompress(content, {
+                    params: {
+                      [zlib.constants.BROTLI_PARAM_QUALITY]: zlib.constants.BROTLI_MAX_QUALITY,
+                      [zlib.constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+                    },
+                  }),
+                  gzip(content, { level: zlib.constants.Z_BEST_COMPRESSION }),
+                ]);
+                if (gzipped.length / content.length < this.minRatio) {
+                  compilation.emitAsset(`${name}.gz`, new sources.RawSource(gzipped), { compressed: true });
+                }
+                if (brotli.length / content.length < this.minRatio) {
+                  compilation.emitAsset(`${name}.br`, new sources.RawSource(brotli), { compressed: true });
+                }
+              }),
+          ),
+      );
+    });
+  }
+};
@@ -7,6 +7,7 @@ const CssMinimizerPlugin = require('css-minimizer-webpack-plugin');
 const sass = require('sass');
 
 const utils = require('./utils.js');
+const PrecompressPlugin = require('./precompress-plugin.js');
 const commonConfig = require('./webpack.common.js');
 
 const ENV = 'production';
@@ -106,7 +107,9 @@ module.exports = async () =>
       new WorkboxPlugin.GenerateSW({
         clientsClaim: true,
         skipWaiting: true,
-        exclude: [/swagger-ui/],
+        exclude: [/swagger-ui/, /\.(br|gz)$/],
       }),
+      // served as they are by the gateway, see spring.web.resources.chain.compressed
+      new PrecompressPlugin(),
     ],
   });